@@ -0,0 +1,25 @@
+package benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run benchmarks with the usual JMH command line, allocation per operation (gc.alloc.rate.norm) is always reported
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public class BenchmarkRunner {
+
+    /**
+     * Main method
+     *
+     * @param args JMH command line options (e.g. benchmark name pattern, -p size=512)
+     * @throws Exception invalid options or benchmark failure
+     */
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder().parent(options).addProfiler(GCProfiler.class).build()).run();
+    }
+}
@@ -0,0 +1,93 @@
+package benchmark;
+
+import model.BitSetModel;
+import model.BlockedModel;
+import model.BooleanModel;
+import model.Buildable;
+import model.Snapshot;
+import model.TiledModel;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Boards and engines for the benchmarks
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public final class Boards {
+
+    /**
+     * No instances
+     */
+    private Boards() {
+    }
+
+    /**
+     * Create engine by class name
+     *
+     * @param engine  simple class name of the engine, e.g. "BitSetModel"
+     * @param initial board
+     * @param torus   true = torus, false = hard limit
+     * @return engine holding the board
+     */
+    public static Buildable create(String engine, Snapshot initial, boolean torus) {
+        Buildable world;
+        switch (engine) {
+            case "BooleanModel":
+                world = new BooleanModel(initial);
+                break;
+            case "BitSetModel":
+                world = new BitSetModel(initial);
+                break;
+            case "TiledModel":
+                world = new TiledModel(initial);
+                break;
+            case "BlockedModel":
+                world = new BlockedModel(initial);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown engine: " + engine);
+        }
+        world.setTorus(torus);
+        return world;
+    }
+
+    /**
+     * Create random board (same seed = same board)
+     *
+     * @param xLength width of board
+     * @param yLength height of board
+     * @param density share of living cells (0..1)
+     * @param seed    random seed
+     * @return board
+     */
+    public static Snapshot random(int xLength, int yLength, double density, long seed) {
+        Random random = new Random(seed);
+        long[] words = new long[Snapshot.wordCount(xLength, yLength)];
+        for (int i = 0; i < xLength * yLength; i++) {
+            if (random.nextDouble() < density) {
+                words[i >>> 6] |= 1L << i;
+            }
+        }
+        return new Snapshot(xLength, yLength, words);
+    }
+
+    /**
+     * Find a bundled pattern file (benchmarks run from the project or the bench directory)
+     *
+     * @param name file name in res/
+     * @return path to pattern file
+     */
+    public static Path pattern(String name) {
+        for (String directory : new String[]{"res", "../res"}) {
+            Path path = Paths.get(directory, name);
+            if (Files.isRegularFile(path)) {
+                return path;
+            }
+        }
+        throw new IllegalArgumentException("Pattern not found: " + name);
+    }
+}
@@ -0,0 +1,26 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts cells processed, reported by JMH as cells per time unit (cells/ns with the benchmarks' time unit)
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Cells {
+    public long cells;
+
+    /**
+     * Start counting again for every iteration
+     */
+    @Setup(Level.Iteration)
+    public void reset() {
+        this.cells = 0;
+    }
+}
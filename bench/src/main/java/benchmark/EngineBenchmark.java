@@ -0,0 +1,114 @@
+package benchmark;
+
+import model.Buildable;
+import model.Snapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Engines on random boards: next generation, living cells and resize
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmark {
+
+    @Param({"BooleanModel", "BitSetModel", "TiledModel", "BlockedModel"})
+    public String engine;
+
+    @Param({"64", "512", "2048"})
+    public int size;
+
+    @Param({"0.1", "0.35"})
+    public double density;
+
+    @Param({"false", "true"})
+    public boolean torus;
+
+    private Snapshot initial;
+    private Buildable world;
+    private boolean grown;
+
+    /**
+     * Create board once per trial
+     */
+    @Setup
+    public void createBoard() {
+        this.initial = Boards.random(size, size, density, 42);
+    }
+
+    /**
+     * Start every iteration from the same board (the population changes while generations are developed)
+     */
+    @Setup(Level.Iteration)
+    public void resetWorld() {
+        this.world = Boards.create(engine, initial, torus);
+        this.grown = false;
+    }
+
+    /**
+     * Develop one generation
+     *
+     * @param counter cells processed
+     */
+    @Benchmark
+    public void developGeneration(Cells counter) {
+        world.developGeneration();
+        counter.cells += (long) size * size;
+    }
+
+    /**
+     * List living cells
+     *
+     * @param counter cells processed
+     * @return living cells
+     */
+    @Benchmark
+    public ArrayList<Integer[]> getPositions(Cells counter) {
+        counter.cells += (long) size * size;
+        return world.getPositions();
+    }
+
+    /**
+     * Resize board, alternately growing by half and shrinking back
+     *
+     * @param counter cells processed
+     */
+    @Benchmark
+    public void setBoardSize(Cells counter) {
+        int length = grown ? size : size + size / 2;
+        world.setBoardSize(length, length);
+        this.grown = !grown;
+        counter.cells += (long) length * length;
+    }
+
+    /**
+     * Copy board (used for display, saving and conversion between engines)
+     *
+     * @param counter cells processed
+     * @return copy of the board
+     */
+    @Benchmark
+    public Snapshot snapshot(Cells counter) {
+        counter.cells += (long) size * size;
+        return world.snapshot();
+    }
+}
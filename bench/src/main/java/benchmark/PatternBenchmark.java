@@ -0,0 +1,131 @@
+package benchmark;
+
+import model.Buildable;
+import model.InputOutput;
+import model.Snapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bundled patterns (res/*.txt): reading, writing and developing them
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatternBenchmark {
+
+    @Param({"Fuenfzehnkampf.txt", "RadDerHlKatharina.txt", "Uhr.txt", "acht.txt", "gliderStream.txt"})
+    public String pattern;
+
+    @Param({"BooleanModel", "BitSetModel", "TiledModel", "BlockedModel"})
+    public String engine;
+
+    @Param({"false", "true"})
+    public boolean torus;
+
+    private String path;
+    private Path output;
+    private Snapshot initial;
+    private Buildable world;
+    private long cells;
+
+    /**
+     * Parse pattern once per trial, create file for writing
+     *
+     * @throws IOException error while reading pattern
+     */
+    @Setup
+    public void readPattern() throws IOException {
+        this.path = Boards.pattern(pattern).toString();
+        this.initial = InputOutput.readSnapshot(path, (done, total) -> true);
+        this.cells = (long) initial.getXLength() * initial.getYLength();
+        this.output = Files.createTempFile("bench", ".txt");
+    }
+
+    /**
+     * Start every iteration from the pattern
+     */
+    @Setup(Level.Iteration)
+    public void resetWorld() {
+        this.world = Boards.create(engine, initial, torus);
+    }
+
+    /**
+     * Remove written file
+     *
+     * @throws IOException error while deleting
+     */
+    @TearDown
+    public void deleteOutput() throws IOException {
+        Files.deleteIfExists(output);
+    }
+
+    /**
+     * Read pattern with the original parser (list of boxed positions)
+     *
+     * @param counter cells processed
+     * @return width, height, living cells
+     */
+    @Benchmark
+    public Object[] readFile(Cells counter) {
+        counter.cells += cells;
+        return InputOutput.readFile(path);
+    }
+
+    /**
+     * Read pattern with the streaming parser
+     *
+     * @param counter cells processed
+     * @return board
+     * @throws IOException error while reading
+     */
+    @Benchmark
+    public Snapshot readSnapshot(Cells counter) throws IOException {
+        counter.cells += cells;
+        return InputOutput.readSnapshot(path, (done, total) -> true);
+    }
+
+    /**
+     * Write pattern
+     *
+     * @param counter cells processed
+     * @throws IOException error while writing
+     */
+    @Benchmark
+    public void createFile(Cells counter) throws IOException {
+        InputOutput.createFile(initial, output.toString(), (done, total) -> true);
+        counter.cells += cells;
+    }
+
+    /**
+     * Develop one generation of the pattern
+     *
+     * @param counter cells processed
+     */
+    @Benchmark
+    public void developGeneration(Cells counter) {
+        world.developGeneration();
+        counter.cells += cells;
+    }
+}
@@ -0,0 +1,82 @@
+package benchmark;
+
+import model.DensityTiles;
+import model.Snapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import view.CellRasterizer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering without JavaFX: cells into the pixel buffer, density shading from tiles
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+
+    @Param({"256", "1024"})
+    public int size;
+
+    @Param({"0.1", "0.35"})
+    public double density;
+
+    @Param({"1", "4"})
+    public int cellSize;
+
+    private final CellRasterizer rasterizer = new CellRasterizer();
+    private Snapshot board;
+    private DensityTiles tiles;
+
+    /**
+     * Create board once per trial
+     */
+    @Setup
+    public void createBoard() {
+        this.board = Boards.random(size, size, density, 42);
+        this.tiles = DensityTiles.of(board);
+    }
+
+    /**
+     * Paint all living cells
+     *
+     * @param counter cells processed
+     * @return pixel buffer
+     */
+    @Benchmark
+    public int[] drawCells(Cells counter) {
+        rasterizer.begin(size, size, cellSize);
+        rasterizer.drawCells(board, 0xFF000000);
+        counter.cells += (long) size * size;
+        return rasterizer.getPixels();
+    }
+
+    /**
+     * Shade pixels from the tile summary (8 cells per pixel)
+     *
+     * @param counter cells processed
+     * @return pixel buffer
+     */
+    @Benchmark
+    public int[] drawDensity(Cells counter) {
+        rasterizer.beginPixels(size / DensityTiles.TILE_SIZE, size / DensityTiles.TILE_SIZE);
+        rasterizer.drawDensity(tiles, 0, 0, 1, 0xFF000000);
+        counter.cells += (long) size * size;
+        return rasterizer.getPixels();
+    }
+}
@@ -0,0 +1,172 @@
+package controller;
+
+import model.BitSetModel;
+import model.BooleanModel;
+import model.Buildable;
+import model.InputOutput;
+import model.PatternLibrary;
+import model.Snapshot;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Run many CLI jobs from a manifest concurrently in one JVM
+ * <p>
+ * Manifest: one job per line, "input,torus,generations,model,output" (same meaning as the CLI arguments),
+ * empty lines and lines starting with # are skipped, relative paths are resolved against the manifest directory.
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public class BatchRunner {
+    // Inputs shared by several jobs are parsed once
+    private static final PatternLibrary LIBRARY = new PatternLibrary(256L << 20);
+    private static final String CSV_HEADER = "input,torus,generations,model,output,status,wall_ms,gens_per_sec,population";
+
+    /**
+     * One line of the manifest
+     */
+    static class Job {
+        String input;
+        boolean torus;
+        int generations;
+        boolean model;
+        String output;
+        String status = "ok";
+        long wallNanos;
+        int population;
+    }
+
+    /**
+     * Process batch arguments: --batch manifest summary.csv [threads]
+     *
+     * @param args program arguments
+     * @throws IOException manifest can't be read or summary can't be written
+     */
+    public static void run(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("--batch ARG1: manifest (input,torus,generations,model,output per line)");
+            System.out.println("        ARG2: summary output path (.csv)");
+            System.out.println("        ARG3: worker threads (int, optional - default = available processors)");
+            System.out.println();
+            return;
+        }
+        Path manifest = Paths.get(args[1]);
+        String summaryPath = args[2];
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        List<Job> jobs = readManifest(manifest);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (Job job : jobs) {
+            futures.add(pool.submit(() -> runJob(job)));
+        }
+        pool.shutdown();
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+        writeSummary(jobs, summaryPath);
+        System.out.println(jobs.size() + " jobs on " + threads + " threads in " + (System.nanoTime() - start) / 1_000_000 + " ms, summary: " + summaryPath);
+    }
+
+    /**
+     * Parse manifest
+     *
+     * @param manifest path to manifest
+     * @return jobs in manifest order
+     * @throws IOException error while reading manifest
+     */
+    static List<Job> readManifest(Path manifest) throws IOException {
+        Path dir = manifest.toAbsolutePath().getParent();
+        List<Job> jobs = new ArrayList<>();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(manifest, Charset.forName("UTF-8"))) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split(",");
+            if (fields.length != 5) {
+                throw new IOException(manifest + ":" + lineNumber + ": expected 5 fields, got " + fields.length);
+            }
+            Job job = new Job();
+            job.input = dir.resolve(fields[0].trim()).toString();
+            job.torus = Boolean.parseBoolean(fields[1].trim());
+            job.generations = Integer.parseInt(fields[2].trim());
+            job.model = Boolean.parseBoolean(fields[3].trim());
+            job.output = dir.resolve(fields[4].trim()).toString();
+            jobs.add(job);
+        }
+        return jobs;
+    }
+
+    /**
+     * Read input, develop world to generation x and write output (errors are recorded in the job)
+     *
+     * @param job job to run
+     */
+    static void runJob(Job job) {
+        long start = System.nanoTime();
+        try {
+            Snapshot snapshot = LIBRARY.load(job.input);
+            Buildable world;
+            if (job.model) {
+                world = new BooleanModel(snapshot);
+            } else {
+                world = new BitSetModel(snapshot);
+            }
+            world.setTorus(job.torus);
+            for (int i = 0; i < job.generations; i++) {
+                world.developGeneration();
+            }
+            Snapshot result = world.snapshot();
+            job.population = result.getPopulation();
+            InputOutput.createFile(result, job.output, (done, total) -> true);
+        } catch (IOException | RuntimeException e) {
+            job.status = "error: " + e;
+        }
+        job.wallNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Write one CSV line per job
+     *
+     * @param jobs        finished jobs
+     * @param summaryPath specified output path
+     * @throws IOException error while writing file
+     */
+    static void writeSummary(List<Job> jobs, String summaryPath) throws IOException {
+        try (BufferedWriter bw = Files.newBufferedWriter(Paths.get(summaryPath), Charset.forName("UTF-8"))) {
+            bw.write(CSV_HEADER);
+            bw.newLine();
+            for (Job job : jobs) {
+                double seconds = job.wallNanos / 1e9;
+                double gensPerSec = seconds > 0 && job.status.equals("ok") ? job.generations / seconds : 0;
+                bw.write(job.input + "," + job.torus + "," + job.generations + "," + job.model + "," + job.output + ","
+                        + job.status.replace(',', ';') + "," + String.format(Locale.ROOT, "%.3f", job.wallNanos / 1e6) + ","
+                        + String.format(Locale.ROOT, "%.1f", gensPerSec) + "," + job.population);
+                bw.newLine();
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package controller;
+
+import model.Buildable;
+import model.InputOutput;
+import model.Snapshot;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless benchmark: develop a generated or loaded board with a chosen engine for a warm-up period and a
+ * measured period, without rendering or output files, and report one CSV line per engine
+ * <p>
+ * With more than one thread every thread develops its own copy of the board (throughput on all cores).
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public class BenchRunner {
+    private static final String CSV_HEADER = "engine,input,width,height,density,torus,threads,warmup_s,measure_s,generations,gens_per_sec,cells_per_sec,p50_us,p99_us";
+
+    /**
+     * Settings and results of one benchmark
+     */
+    static class Run {
+        String engine;
+        String input = "random";
+        Snapshot board;
+        boolean torus;
+        int threads;
+        double warmupSeconds;
+        double measureSeconds;
+        final AtomicLong generations = new AtomicLong();
+        final Histogram stepNanos = new Histogram();
+    }
+
+    /**
+     * Process bench arguments: --bench [--engine=name|all] [--size=WxH] [--density=double] [--input=path]
+     * [--torus=boolean] [--threads=int] [--warmup=seconds] [--measure=seconds] [--seed=long] [--csv=path]
+     *
+     * @param args program arguments
+     * @throws IOException input can't be read or CSV can't be written
+     */
+    public static void run(String[] args) throws IOException {
+        HashMap<String, String> options = new HashMap<>();
+        CLI.parseOptions(args, options);
+        if (options.containsKey("help")) {
+            System.out.println("--bench --engine=name|all: engine (" + String.join(", ", Engines.NAMES) + ", default = all)");
+            System.out.println("        --size=WxH --density=double: random board (default = 512x512, 0.3)");
+            System.out.println("        --input=path: board from file instead of random board");
+            System.out.println("        --torus=boolean --threads=int: surface mode and worker threads (default = true, 1)");
+            System.out.println("        --warmup=seconds --measure=seconds: warm-up and measured period (default = 2, 5)");
+            System.out.println("        --seed=long: seed for random board (default = 1)");
+            System.out.println("        --csv=path: append results to file (header written once), default = console");
+            System.out.println();
+            return;
+        }
+        Snapshot board;
+        String input = "random";
+        if (options.containsKey("input")) {
+            input = options.get("input");
+            board = InputOutput.readSnapshot(input, (done, total) -> true);
+        } else {
+            String[] size = options.getOrDefault("size", "512x512").split("x");
+            double density = Double.parseDouble(options.getOrDefault("density", "0.3"));
+            board = Snapshot.random(Integer.parseInt(size[0]), Integer.parseInt(size[1]), density, new Random(Long.parseLong(options.getOrDefault("seed", "1"))));
+        }
+        String engine = options.getOrDefault("engine", "all");
+        String[] engines = engine.equals("all") ? Engines.NAMES : engine.split(",");
+
+        List<String> lines = new ArrayList<>();
+        for (String name : engines) {
+            Run run = new Run();
+            run.engine = name;
+            run.input = input;
+            run.board = board;
+            run.torus = Boolean.parseBoolean(options.getOrDefault("torus", "true"));
+            run.threads = Math.max(1, Integer.parseInt(options.getOrDefault("threads", "1")));
+            run.warmupSeconds = Double.parseDouble(options.getOrDefault("warmup", "2"));
+            run.measureSeconds = Double.parseDouble(options.getOrDefault("measure", "5"));
+            measure(run);
+            lines.add(toCsv(run));
+        }
+        writeCsv(lines, options.get("csv"));
+    }
+
+    /**
+     * Run benchmark (blocks for warm-up plus measured period)
+     *
+     * @param run settings, results are filled in
+     */
+    static void measure(Run run) {
+        long start = System.nanoTime();
+        long warmupEnd = start + (long) (run.warmupSeconds * 1e9);
+        long end = warmupEnd + (long) (run.measureSeconds * 1e9);
+        Thread[] workers = new Thread[run.threads];
+        for (int t = 0; t < workers.length; t++) {
+            Buildable world = Engines.create(run.engine, run.board);
+            world.setTorus(run.torus);
+            workers[t] = new Thread(() -> develop(run, world, warmupEnd, end), "bench-" + t);
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Develop one world until the end of the measured period, steps after the warm-up are counted
+     *
+     * @param run       benchmark (counters)
+     * @param world     world of this thread
+     * @param warmupEnd end of warm-up (System.nanoTime)
+     * @param end       end of measured period (System.nanoTime)
+     */
+    private static void develop(Run run, Buildable world, long warmupEnd, long end) {
+        long now = System.nanoTime();
+        while (now < end) {
+            world.developGeneration();
+            long after = System.nanoTime();
+            // Steps overlapping the start of the measured period are not counted
+            if (now >= warmupEnd) {
+                run.generations.incrementAndGet();
+                run.stepNanos.record(after - now);
+            }
+            now = after;
+        }
+    }
+
+    /**
+     * Format result
+     *
+     * @param run finished benchmark
+     * @return CSV line
+     */
+    static String toCsv(Run run) {
+        Snapshot board = run.board;
+        long cells = (long) board.getXLength() * board.getYLength();
+        double density = cells > 0 ? (double) board.getPopulation() / cells : 0;
+        double gensPerSec = run.measureSeconds > 0 ? run.generations.get() / run.measureSeconds : 0;
+        return String.format(Locale.ROOT, "%s,%s,%d,%d,%.4f,%b,%d,%.1f,%.1f,%d,%.1f,%.0f,%.1f,%.1f",
+                run.engine, run.input.replace(',', ';'), board.getXLength(), board.getYLength(), density, run.torus, run.threads,
+                run.warmupSeconds, run.measureSeconds, run.generations.get(), gensPerSec, gensPerSec * cells,
+                run.stepNanos.getPercentile(50) / 1e3, run.stepNanos.getPercentile(99) / 1e3);
+    }
+
+    /**
+     * Print CSV lines, or append them to a file (header is written if the file is new)
+     *
+     * @param lines   CSV lines without header
+     * @param csvPath path to file, null = console
+     * @throws IOException error while writing file
+     */
+    static void writeCsv(List<String> lines, String csvPath) throws IOException {
+        if (csvPath == null) {
+            System.out.println(CSV_HEADER);
+            for (String line : lines) {
+                System.out.println(line);
+            }
+            return;
+        }
+        Path path = Paths.get(csvPath);
+        boolean header = !Files.exists(path) || Files.size(path) == 0;
+        try (BufferedWriter bw = Files.newBufferedWriter(path, Charset.forName("UTF-8"), StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (header) {
+                bw.write(CSV_HEADER);
+                bw.newLine();
+            }
+            for (String line : lines) {
+                bw.write(line);
+                bw.newLine();
+            }
+        }
+        System.out.println(lines.size() + " results appended to " + csvPath);
+    }
+}
@@ -4,9 +4,13 @@ import model.BitSetModel;
 import model.BooleanModel;
 import model.Buildable;
 import model.InputOutput;
+import model.RecordingWriter;
+import model.Snapshot;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 
 import static model.InputOutput.printToConsole;
 
@@ -23,6 +27,38 @@ public class CLI {
      */
     public static void startCLI(String[] args) throws IOException {
         Buildable world;
+        // Batch mode: many jobs from a manifest in one JVM
+        if (args.length > 0 && args[0].equals("--batch")) {
+            BatchRunner.run(args);
+            return;
+        }
+        // Benchmark mode: develop without rendering or output files, print CSV
+        if (args.length > 0 && args[0].equals("--bench")) {
+            BenchRunner.run(args);
+            return;
+        }
+        // Sharded mode: strips of the board are developed by worker processes
+        if (args.length > 0 && args[0].equals("--shards")) {
+            if (!ShardCoordinator.run(args)) {
+                System.exit(1);
+            }
+            return;
+        }
+        // Verification mode: compare all engines with the reference, check throughput against baseline
+        if (args.length > 0 && args[0].equals("--verify")) {
+            if (!Verifier.run(args)) {
+                System.exit(1);
+            }
+            return;
+        }
+        // Server mode: many worlds controlled over HTTP on localhost
+        if (args.length > 0 && args[0].equals("--serve")) {
+            WorldServer.run(args);
+            return;
+        }
+        // Options (--name or --name=value) may follow the positional arguments
+        HashMap<String, String> options = new HashMap<>();
+        args = parseOptions(args, options);
         // Checks if a program argument is missing
         if (args.length != 5) {
             System.out.println("ARG0: filepath (.txt)");
@@ -31,6 +67,16 @@ public class CLI {
             System.out.println("ARG3: output path (.txt)");
             System.out.println("ARG4: model (boolean - true = Boolean[][] Model, false = BitSet Model)");
             System.out.println();
+            System.out.println("--engine=name: engine instead of ARG4 (" + String.join(", ", Engines.NAMES) + ")");
+            System.out.println("--record=path [--keyframes=int]: record run for replay (.golr)");
+            System.out.println("--metrics: print timing, population and allocation metrics at exit");
+            System.out.println("--stats: print time spent per phase (read, generations, recording, output) at exit");
+            System.out.println("--batch manifest summary.csv [threads]: run many jobs concurrently");
+            System.out.println("--bench [--engine=name] [--size=WxH] ... (--bench --help): measure generations per second, CSV output");
+            System.out.println("--shards filepath torus generation output workers: develop strips in worker processes");
+            System.out.println("--verify patterns baseline.properties: compare all engines and check their throughput");
+            System.out.println("--serve [--port=int] ... (--serve --help): host many worlds, commands over HTTP on localhost");
+            System.out.println();
             System.exit(0);
         }
         // Initialize variables with program arguments
@@ -41,7 +87,10 @@ public class CLI {
         boolean model = Boolean.parseBoolean(args[4]);
 
         // Read file
+        Metrics metrics = Metrics.get();
+        long start = System.nanoTime();
         Object[] data = InputOutput.readFile(filePath);
+        metrics.time(Metrics.OPEN, System.nanoTime() - start);
 
         // Initialize variables with processed data from file
         int width = (int) data[0];
@@ -49,7 +98,9 @@ public class CLI {
         ArrayList<Integer[]> positions = (ArrayList<Integer[]>) data[2];
 
         // Create world
-        if (model) {
+        if (options.containsKey("engine")) {
+            world = Engines.create(options.get("engine"), Snapshot.of(width, length, positions));
+        } else if (model) {
             world = new BooleanModel(width, length, positions);
         } else {
             world = new BitSetModel(width, length, positions);
@@ -60,15 +111,33 @@ public class CLI {
         world.setTorus(torus);
 
         // Develop world to generation x
-        for (int i = 0; i < generation; i++) {
-            world.developGeneration();
+        RecordingWriter recorder = null;
+        if (options.containsKey("record")) {
+            int keyframes = Integer.parseInt(options.getOrDefault("keyframes", "100"));
+            recorder = new RecordingWriter(options.get("record"), world.snapshot(), keyframes);
+        }
+        if (recorder != null) {
+            for (int i = 0; i < generation; i++) {
+                metrics.developGeneration(world);
+                long recordStart = System.nanoTime();
+                recorder.append(world.snapshot());
+                metrics.time(Metrics.RECORD, System.nanoTime() - recordStart);
+            }
+            recorder.close();
+        } else {
+            // Nothing needs the generations in between, engines may develop several per pass
+            metrics.developGenerations(world, generation);
         }
 
         // Show result in console
+        start = System.nanoTime();
         printToConsole(world);
+        metrics.time(Metrics.PRINT, System.nanoTime() - start);
 
         // Write board size and living cells to file
+        start = System.nanoTime();
         InputOutput.createFile(world, outputPath);
+        metrics.time(Metrics.SAVE, System.nanoTime() - start);
 
         System.out.println();
         System.out.println("ARG0: " + filePath);
@@ -81,5 +150,38 @@ public class CLI {
         System.out.println("      output path (.txt)");
         System.out.println("ARG4: " + model);
         System.out.println("      model (boolean - true = Boolean[][] Model, false = BitSet Model)");
+
+        if (options.containsKey("metrics")) {
+            System.out.println();
+            System.out.print(metrics.dump());
+        }
+        if (options.containsKey("stats")) {
+            System.out.println();
+            System.out.print(metrics.phaseTable(Metrics.OPEN, Metrics.GENERATION, Metrics.RECORD, Metrics.PRINT, Metrics.SAVE));
+        }
+    }
+
+    /**
+     * Split program arguments into positional arguments and options
+     *
+     * @param args    program arguments
+     * @param options filled with options (--name=value, or --name with empty value)
+     * @return positional arguments
+     */
+    static String[] parseOptions(String[] args, Map<String, String> options) {
+        ArrayList<String> positional = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                int equals = arg.indexOf('=');
+                if (equals < 0) {
+                    options.put(arg.substring(2), "");
+                } else {
+                    options.put(arg.substring(2, equals), arg.substring(equals + 1));
+                }
+            } else {
+                positional.add(arg);
+            }
+        }
+        return positional.toArray(new String[0]);
     }
 }
@@ -1,31 +1,71 @@
 package controller;
 
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
 import javafx.beans.property.SimpleBooleanProperty;
+import javafx.concurrent.Task;
 import javafx.event.Event;
 import javafx.event.EventHandler;
-import javafx.scene.control.Tooltip;
+import javafx.scene.control.MenuItem;
+import javafx.geometry.Rectangle2D;
 import javafx.scene.input.MouseButton;
+import javafx.stage.Screen;
 import javafx.stage.Stage;
-import javafx.util.Duration;
-import model.BitSetModel;
-import model.BooleanModel;
+import model.CellBatch;
 import model.Buildable;
-import model.InputOutput;
+import model.EventTypes;
+import model.ModelEvent;
+import model.ModelListener;
+import model.PatternLibrary;
+import model.RecordingWriter;
+import model.ReplayModel;
+import model.Snapshot;
 import view.View;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
  */
 public class Controller implements EventHandler {
+    // Interval for measuring generations per second
+    private static final long RATE_INTERVAL_NANOS = 500_000_000L;
+    // Generations developed ahead of the display while playing
+    private static final int LOOK_AHEAD_FRAMES = 32;
+    // Window was resized since the last display pulse
+    private boolean resizePending;
+    private long rateSampleTime;
+    private long rateSampleGeneration;
+    private long shownGeneration;
+    // Phases shown in the timing overlay, with timer totals at the last sample
+    private static final String[] PHASES = {Metrics.GENERATION, Metrics.RECORD, Metrics.COPY, Metrics.REFRESH};
+    private static final String[] PHASE_NAMES = {"compute", "record", "copy", "paint"};
+    private final long[] phaseSums = new long[PHASES.length];
+    private final long[] phaseCounts = new long[PHASES.length];
+    // Cells drawn with the mouse since the last display pulse
+    private final CellBatch stroke = new CellBatch();
+    private int[] strokeCell;
+    private boolean strokeAlive;
     Stage stage;
     Buildable world;
     private View view;
+    private Task<?> ioTask;
+    private volatile RecordingWriter recorder;
+    private final Simulation simulation;
+    // Delivers model events to the View
+    private final ModelListener display = this::showModelChange;
+    private final PatternLibrary library = new PatternLibrary(64L << 20);
+    // Single background thread for save/open, does not keep the application alive
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "GameOfLife-IO");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     /**
      * Constructor
@@ -36,158 +76,145 @@ public class Controller implements EventHandler {
     public Controller(Stage stage, Buildable world) {
         this.stage = stage;
         this.world = world;
+        this.simulation = new Simulation(world);
         this.view = new View(this);
         view.cellSize = 7;
         view.torus = new SimpleBooleanProperty(false);
         view.sceneWidth = world.getXLength() * view.cellSize;
         view.sceneHeight = world.getYLength() * view.cellSize;
-        this.world.addObserver(this.view);
+        this.world.addListener(this.display, Platform::runLater);
         try {
             view.start(stage);
             view.resizeStage();
             view.resizeCanvas(this.world.getXLength(), this.world.getYLength());
-            view.refresh(this.world.getPositions());
+            view.refresh(this.world);
         } catch (Exception e) {
             e.printStackTrace();
         }
-        // Duration of generations
-        view.timeLine = new Timeline(new KeyFrame(Duration.millis(view.speed), ae -> {
-            this.world.developGeneration();
-            view.currentGeneration.set(view.currentGeneration.intValue() + 1);
-            view.aliveCells.set(this.world.getPositions().size());
-        }));
-//        view.timeLine.setCycleCount(view.cycleCount);
-        view.timeLine.setRate(1.0);
-        // Setting generation speed, bound to Slider.
-        view.timeLine.rateProperty().addListener((observable, oldValue, newValue) -> {
-            view.timeLine.setRate((double) newValue);
-        });
-        // Reset Run Button
-        view.timeLine.setOnFinished(event -> {
-            view.bRun.getStyleClass().removeAll("button", "bRun", "bPause");
-            view.bRun.getStyleClass().add("button");
-            view.bRun.getStyleClass().add("bRun");
-            view.bRun.setTooltip(new Tooltip("Run"));
-//            System.out.println(view.bRun.getStyleClass()+ " styleclass after setOnFinished.")
-            view.isPlaying = new SimpleBooleanProperty(false);
+        // Index bundled patterns in the background, refresh changed files whenever the library menu opens
+        ioExecutor.execute(() -> {
+            try {
+                if (Files.isDirectory(Paths.get("res"))) {
+                    library.addDirectory(Paths.get("res"));
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            Platform.runLater(this::updateLibraryMenu);
         });
-        // Listener to height UI size, to resize canvas dynamically
-        view.pane.heightProperty().addListener((observable, oldValue, newValue) -> {
-            this.world.setBoardSize(this.world.getXLength(), ((newValue.intValue()) / (int) view.cellSize));
-            this.view.resizeCanvas(this.world.getXLength(), this.world.getYLength());
-            this.view.refresh(this.world.getPositions());
-//            System.out.println("(LISTENER) STACKPANE HEIGHTPROPERTY - STACKP-X: " + view.pane.getWidth() + ", STACKP-Y: " + view.pane.getHeight() + " - CANVAS-X: " + view.canvas.getWidth() + ", CANVAS-Y: " + view.canvas.getHeight() + " - STACKP-Y: OLD " + oldValue + ", NEW " + newValue);
+        view.menuLibrary.setOnShowing(event -> ioExecutor.execute(() -> {
+            try {
+                library.refresh();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            Platform.runLater(this::updateLibraryMenu);
+        }));
+        // Generations are developed on the simulation thread, recorded there and shown by the display pulse
+        // Without recording or trail nothing needs the generations in between, engines may develop several per pass
+        simulation.setStepListener(developed -> afterGeneration(), () -> recorder != null || view.isTrailRecorded());
+        // Generations ahead of the display smooth out slow ones, not while every generation is recorded
+        simulation.setLookAhead(LOOK_AHEAD_FRAMES, () -> recorder == null && !view.isTrailRecorded() && !(this.world instanceof ReplayModel));
+        simulation.setOnFinished(() -> Platform.runLater(() -> view.setPlaying(false)));
+        simulation.setRate(view.sSlider.getValue() * 1000 / view.speed);
+        // Speed slider sets target generations per second, independent of the frame rate
+        view.sSlider.valueProperty().addListener((observable, oldValue, newValue) -> {
+            simulation.setRate(newValue.doubleValue() * 1000 / view.speed);
         });
-        // Listener to width UI size, to resize canvas dynamically
-        view.pane.widthProperty().addListener((observable, oldValue, newValue) -> {
-            this.world.setBoardSize(((newValue.intValue()) / (int) view.cellSize), this.world.getYLength());
-            this.view.resizeCanvas(this.world.getXLength(), this.world.getYLength());
-            this.view.refresh(this.world.getPositions());
-//            System.out.println("(LISTENER) STACKPANE WIDTHPROPERTY - STACKP-X: " + view.pane.getWidth() + ", STACKP-Y: " + view.pane.getHeight() + " - CANVAS-X: " + view.canvas.getWidth() + ", CANVAS-Y: " + view.canvas.getHeight() + " - STACKP-X: OLD " + oldValue + ", NEW " + newValue);
+        // Max speed: generations back to back, the slider rate applies again when switched off
+        view.cMaxSpeed.selectedProperty().addListener((observable, oldValue, newValue) -> {
+            simulation.setRate(newValue ? Double.POSITIVE_INFINITY : view.sSlider.getValue() * 1000 / view.speed);
         });
-        // Toggle cells through mouse events
-        view.canvas.setOnMouseClicked(event -> {
-            if (event.getButton() == MouseButton.PRIMARY && event.getX() > 0 && event.getX() < view.canvas.widthProperty().intValue() && event.getY() > 0 && event.getY() < view.canvas.heightProperty().intValue()) {
-                int x = (int) event.getX();
-                int y = (int) event.getY();
-//                System.out.println(x + ", " + y);
-                int xc = x / (int) view.cellSize;
-                int yc = y / (int) view.cellSize;
-                this.world.toggleCell(xc, yc);
+        // Display pulse at screen rate, shows only the newest generation
+        view.pulse = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                showLatestGeneration();
+                measureRate(now);
+            }
+        };
+        view.pulse.start();
+        // Window size changes are applied once per display pulse, however many events arrive in between
+        view.pane.heightProperty().addListener((observable, oldValue, newValue) -> this.resizePending = true);
+        view.pane.widthProperty().addListener((observable, oldValue, newValue) -> this.resizePending = true);
+        // Draw cells with the mouse (primary button), pan viewport (secondary button)
+        view.canvas.setOnMousePressed(event -> {
+            view.startPan(event.getX(), event.getY());
+            if (event.getButton() == MouseButton.PRIMARY) {
+                beginStroke(event.getX(), event.getY());
             }
         });
         view.canvas.setOnMouseDragged(event -> {
-            if (event.getX() > 0 && event.getX() < view.canvas.widthProperty().intValue() && event.getY() > 0 && event.getY() < view.canvas.heightProperty().intValue()) {
-                this.world.toggleCell((int) (event.getX() / (view.cellSize)), (int) (event.getY() / view.cellSize));
+            if (event.getButton() == MouseButton.SECONDARY && !view.followWindow) {
+                view.panTo(event.getX(), event.getY());
+                redraw();
+            } else if (event.getButton() == MouseButton.PRIMARY) {
+                continueStroke(event.getX(), event.getY());
             }
         });
+        // Zoom around the mouse with the scroll wheel
+        view.canvas.setOnScroll(event -> {
+            if (!view.followWindow && event.getDeltaY() != 0) {
+                view.zoomAt(event.getX(), event.getY(), event.getDeltaY() > 0 ? 1 : -1);
+                redraw();
+            }
+        });
+        // Board follows window (resized with the window) or free viewport (zoom and pan)
+        view.fitBoard.selectedProperty().addListener((observable, oldValue, newValue) -> setFollowWindow(newValue));
         // Torus on/off
         view.cTorus.selectedProperty().addListener((observable, oldValue, newValue) -> {
             view.torus = new SimpleBooleanProperty(newValue);
-            this.world.setTorus(newValue);
+            simulation.edit(() -> this.world.setTorus(newValue));
         });
         // Slider to set the cell size
         view.cSlider.valueProperty().addListener((observable, oldValue, newValue) -> {
+            if (!view.followWindow) {
+                view.zoom = newValue.intValue();
+                view.zoomAt(0, 0, 0);
+                redraw();
+                return;
+            }
             view.cellSize = newValue.doubleValue();
-            this.world.setBoardSize(((view.pane.widthProperty().getValue().intValue() - 5) / (int) view.cellSize), ((view.pane.heightProperty().getValue().intValue() - 5) / (int) view.cellSize));
+            simulation.edit(() -> this.world.setBoardSize(((view.pane.widthProperty().getValue().intValue() - 5) / (int) view.cellSize), ((view.pane.heightProperty().getValue().intValue() - 5) / (int) view.cellSize)));
         });
         // Set stroke to 0.07
         view.rbStroke.selectedProperty().addListener((observable, oldValue, newValue) -> {
             if (newValue) {
                 view.strokeGrid.set(0.07);
-                view.refresh(this.world.getPositions());
+                view.redrawGrid();
             }
         });
         // Set stroke to 0.3
         view.rbStroke2.selectedProperty().addListener((observable, oldValue, newValue) -> {
             if (newValue)
                 view.strokeGrid.set(0.3);
-            view.refresh(this.world.getPositions());
+            view.redrawGrid();
         });
         // Set stroke to 1.5
         view.rbStroke3.selectedProperty().addListener((observable, oldValue, newValue) -> {
             if (newValue)
                 view.strokeGrid.set(1.5);
-            view.refresh(this.world.getPositions());
+            view.redrawGrid();
         });
-        // Toggle button BooleanModel
+        // Toggle buttons BooleanModel / BitSetModel / TiledModel / BlockedModel
         view.tb1.selectedProperty().addListener((observable, oldValue, newValue) -> {
-            if (view.isPlaying.getValue()) {
-                view.isPlaying.setValue(false);
-                view.timeLine.pause();
-                if (newValue) {
-                    this.world.deleteObserver(this.view);
-//                    System.out.println("-PRE-SIZE " + this.world.getXLength() + ", " + this.world.getYLength());
-                    this.world = new BooleanModel(this.world.getXLength(), this.world.getYLength(), this.world.getPositions());
-                    this.world.setTorus(view.torus.getValue().booleanValue());
-                    this.world.addObserver(this.view);
-//                    System.out.println("-BOOLEAN-SIZE " + this.world.getXLength() + ", " + this.world.getYLength());
-                    view.refresh(this.world.getPositions());
-//                    System.out.println("BooleanModel");
-                }
-                view.isPlaying.setValue(true);
-                view.timeLine.play();
-            } else {
-                if (newValue) {
-                    this.world.deleteObserver(this.view);
-//                    System.out.println("-PRE-SIZE " + this.world.getXLength() + ", " + this.world.getYLength());
-                    this.world = new BooleanModel(this.world.getXLength(), this.world.getYLength(), this.world.getPositions());
-                    this.world.setTorus(view.torus.getValue().booleanValue());
-                    this.world.addObserver(this.view);
-//                    System.out.println("-BOOLEAN-SIZE " + this.world.getXLength() + ", " + this.world.getYLength());
-                    view.refresh(this.world.getPositions());
-//                    System.out.println("BooleanModel");
-                }
+            if (newValue) {
+                switchEngine("BooleanModel");
             }
         });
-        // Toggle button BitSetModel
         view.tb2.selectedProperty().addListener((observable, oldValue, newValue) -> {
-            if (view.isPlaying.getValue()) {
-                view.isPlaying.setValue(false);
-                view.timeLine.pause();
-                if (newValue) {
-                    this.world.deleteObserver(this.view);
-//                    System.out.println("-PRE-SIZE " + this.world.getXLength() + ", " + this.world.getYLength());
-                    this.world = new BitSetModel(this.world.getXLength(), this.world.getYLength(), this.world.getPositions());
-                    this.world.setTorus(view.torus.getValue().booleanValue());
-                    this.world.addObserver(this.view);
-//                    System.out.println("-BIT-SIZE " + this.world.getXLength() + ", " + this.world.getYLength());
-                    view.refresh(this.world.getPositions());
-//                    System.out.println("BitSetModel");
-                }
-                view.isPlaying.setValue(true);
-                view.timeLine.play();
-            } else {
-                if (newValue) {
-                    this.world.deleteObserver(this.view);
-//                    System.out.println("-PRE-SIZE " + this.world.getXLength() + ", " + this.world.getYLength());
-                    this.world = new BitSetModel(this.world.getXLength(), this.world.getYLength(), this.world.getPositions());
-                    this.world.setTorus(view.torus.getValue().booleanValue());
-                    this.world.addObserver(this.view);
-//                    System.out.println("-BIT-SIZE " + this.world.getXLength() + ", " + this.world.getYLength());
-                    view.refresh(this.world.getPositions());
-//                    System.out.println("BitSetModel");
-                }
+            if (newValue) {
+                switchEngine("BitSetModel");
+            }
+        });
+        view.tb3.selectedProperty().addListener((observable, oldValue, newValue) -> {
+            if (newValue) {
+                switchEngine("TiledModel");
+            }
+        });
+        view.tb4.selectedProperty().addListener((observable, oldValue, newValue) -> {
+            if (newValue) {
+                switchEngine("BlockedModel");
             }
         });
     }
@@ -200,33 +227,58 @@ public class Controller implements EventHandler {
      */
     @Override
     public void handle(Event event) {
+        // event from run button
+        if (event.getSource().equals(view.bRun)) {
+            if (simulation.isRunning()) {
+                simulation.pause();
+                view.setPlaying(false);
+            } else {
+                simulation.play();
+                view.setPlaying(true);
+            }
+        }
+        // event from next button (run to step)
+        if (event.getSource().equals(view.bNext)) {
+            if (view.tfGeneration.getText().isEmpty()) {
+                view.generationJump = 1;
+            } else {
+                view.generationJump = Integer.parseInt(view.tfGeneration.getText());
+            }
+            simulation.run(view.generationJump);
+            view.setPlaying(true);
+        }
         // event from reset button
         if (event.getSource().equals(view.bReset)) {
-            view.memory.clear();
-            world.resetBoard();
-            view.timeLine.stop();
-            view.bRun.getStyleClass().remove("bPause");
-            view.bRun.getStyleClass().add("bRun");
-            view.bRun.setTooltip(new Tooltip("Run"));
-            view.isPlaying = new SimpleBooleanProperty(false);
+            simulation.pause();
+            view.trailMap.clear();
+            simulation.edit(() -> {
+                world.resetBoard();
+                simulation.setGeneration(0);
+            });
+            simulation.takeFrame();
+            view.setPlaying(false);
             view.currentGeneration.set(0);
-            view.aliveCells.set(this.world.getPositions().size());
+            view.aliveCells.set(this.world.getDensityTiles().getPopulation());
         }
         // event from fastForward button
         if (event.getSource().equals(view.bFastForward)) {
             if (view.tfGeneration.getText().isEmpty()) {
                 view.generationJump = 1;
-                this.world.developGeneration();
-                view.currentGeneration.set(view.currentGeneration.intValue() + 1);
-                view.aliveCells.set(this.world.getPositions().size());
             } else {
                 view.generationJump = Integer.parseInt(view.tfGeneration.getText());
-                for (int i = 0; i < view.generationJump; i++) {
-                    this.world.developGeneration();
-                    view.currentGeneration.set(view.currentGeneration.intValue() + 1);
-                    view.aliveCells.set(this.world.getPositions().size());
-                }
             }
+            if (this.world instanceof ReplayModel) {
+                // Recordings jump through keyframes instead of replaying every generation
+                ReplayModel replay = (ReplayModel) this.world;
+                simulation.edit(() -> {
+                    replay.seek(replay.getGeneration() + view.generationJump);
+                    simulation.setGeneration(replay.getGeneration());
+                });
+            } else {
+                simulation.step(view.generationJump);
+            }
+            view.currentGeneration.set((int) simulation.getGeneration());
+            view.aliveCells.set(this.world.getDensityTiles().getPopulation());
         }
         // event from menuItem SaveAs
         if (event.getSource().equals(view.menuItemSaveAs)) {
@@ -234,10 +286,11 @@ public class Controller implements EventHandler {
             if (saveFile != null) {
                 view.outputPath = saveFile.getPath();
             }
-            try {
-                InputOutput.createFile(this.world, view.outputPath);
-            } catch (IOException e) {
-                e.printStackTrace();
+            if (view.outputPath != null) {
+                // Snapshot is taken here, the simulation keeps running while the file is written
+                Snapshot[] snapshot = new Snapshot[1];
+                simulation.edit(() -> snapshot[0] = this.world.snapshot());
+                runIOTask(new SaveTask(snapshot[0], view.outputPath));
             }
         }
         // event from menuItem Open
@@ -246,22 +299,47 @@ public class Controller implements EventHandler {
             if (openFile != null) {
                 view.inputPath = openFile.getPath();
             }
-            Object[] tmp = InputOutput.readFile(view.inputPath);
-            view.memory.clear();
-            this.world = new BooleanModel((int) tmp[0], (int) tmp[1], (ArrayList<Integer[]>) tmp[2]);
-            this.world.setTorus(view.torus.getValue());
-            this.world.addObserver(this.view);
-            view.timeLine.stop();
-            view.bRun.getStyleClass().remove("bPause");
-            view.bRun.getStyleClass().add("bRun");
-            view.bRun.setTooltip(new Tooltip("Run"));
-            view.isPlaying = new SimpleBooleanProperty(false);
-            view.currentGeneration.setValue(0);
-            view.aliveCells.setValue(this.world.getPositions().size());
-            view.resizeStage();
-            this.view.resizeCanvas(this.world.getXLength(), this.world.getYLength());
-            this.view.refresh(this.world.getPositions());
-
+            if (view.inputPath != null) {
+                openPattern(view.inputPath);
+            }
+        }
+        // event from menuItem Record (start/stop)
+        if (event.getSource().equals(view.menuItemRecord)) {
+            if (recorder == null) {
+                File recordFile = view.recordingChooser.showSaveDialog(stage);
+                if (recordFile != null) {
+                    simulation.edit(() -> {
+                        try {
+                            this.recorder = new RecordingWriter(recordFile.getPath(), this.world.snapshot(), 100);
+                            view.menuItemRecord.setText("Stop Recording");
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    });
+                }
+            } else {
+                simulation.edit(this::stopRecording);
+            }
+        }
+        // event from menuItem Open Recording
+        if (event.getSource().equals(view.menuItemOpenRecording)) {
+            File recordFile = view.recordingChooser.showOpenDialog(stage);
+            if (recordFile != null) {
+                Task<Buildable> replayTask = new Task<Buildable>() {
+                    @Override
+                    protected Buildable call() throws Exception {
+                        return new ReplayModel(recordFile.getPath());
+                    }
+                };
+                replayTask.setOnSucceeded(e -> openWorld(replayTask.getValue()));
+                runIOTask(replayTask);
+            }
+        }
+        // event from cancel button (save/open)
+        if (event.getSource().equals(view.bCancelIO)) {
+            if (ioTask != null) {
+                ioTask.cancel();
+            }
         }
         // event from menuItem show grid
         if (event.getSource().equals(view.gridAdjust)) {
@@ -275,7 +353,338 @@ public class Controller implements EventHandler {
                 view.hideGrid = true;
             }
             view.isGridDisplayed = !view.isGridDisplayed;
-            view.refresh(this.world.getPositions());
+            view.redrawGrid();
+        }
+    }
+
+    /**
+     * Open pattern file through the library (cached boards are not read again)
+     *
+     * @param inputPath path to file
+     */
+    private void openPattern(String inputPath) {
+        OpenTask openTask = new OpenTask(library, inputPath);
+        openTask.setOnSucceeded(e -> {
+            openWorld(openTask.getValue());
+            updateLibraryMenu();
+        });
+        runIOTask(openTask);
+    }
+
+    /**
+     * Fill library menu with indexed patterns
+     */
+    private void updateLibraryMenu() {
+        view.menuLibrary.getItems().clear();
+        for (PatternLibrary.Entry entry : library.getEntries()) {
+            MenuItem item = new MenuItem(entry.toString());
+            item.setOnAction(event -> {
+                view.inputPath = entry.getPath().toString();
+                openPattern(view.inputPath);
+            });
+            view.menuLibrary.getItems().add(item);
+        }
+    }
+
+    /**
+     * Show newest generation published by the simulation (called by the display pulse)
+     */
+    private void showLatestGeneration() {
+        flushStroke();
+        if (resizePending) {
+            this.resizePending = false;
+            applyWindowSize();
+        }
+        Simulation.Frame frame = simulation.takeFrame();
+        if (frame != null) {
+            long start = System.nanoTime();
+            view.refresh(frame.snapshot, frame.tiles);
+            Metrics.get().time(Metrics.REFRESH, System.nanoTime() - start);
+            view.currentGeneration.set((int) frame.generation);
+            view.aliveCells.set(frame.tiles.getPopulation());
+            this.shownGeneration = frame.generation;
+        }
+        simulation.setRegion(view.regionX(), view.regionY(), view.regionWidth(), view.regionHeight());
+    }
+
+    /**
+     * Deliver a model event to the View on the FX thread while the world is locked
+     *
+     * @param model changed model
+     * @param event type of change
+     */
+    private void showModelChange(Buildable model, ModelEvent event) {
+        if (event.getType() == EventTypes.UPDATED_BOARD && view.isPlaying.get()) {
+            // Developed generations are shown by the display pulse, the View ignores them and the look-ahead is kept
+            simulation.read(() -> view.modelChanged(model, event));
+        } else {
+            // The View paints the world, which must not be ahead of the display
+            simulation.edit(() -> view.modelChanged(model, event));
+        }
+    }
+
+    /**
+     * Update measured generations per second from the generations shown (called by the display pulse)
+     *
+     * @param now pulse time in nanoseconds
+     */
+    private void measureRate(long now) {
+        long elapsed = now - rateSampleTime;
+        if (elapsed < RATE_INTERVAL_NANOS) {
+            return;
+        }
+        // Reset or open moves the generation backwards, don't show a negative rate
+        long developed = Math.max(0, shownGeneration - rateSampleGeneration);
+        view.generationsPerSecond.set(developed * 1e9 / elapsed);
+        if (view.timing.isSelected()) {
+            view.phaseShow.setText(describePhases(elapsed));
         }
+        this.rateSampleTime = now;
+        this.rateSampleGeneration = shownGeneration;
+    }
+
+    /**
+     * Describe time spent per phase since the last call (milliseconds per second and mean per tick)
+     *
+     * @param elapsed nanoseconds since the last call
+     * @return phases in one line
+     */
+    private String describePhases(long elapsed) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < PHASES.length; i++) {
+            Histogram timer = Metrics.get().timer(PHASES[i]);
+            long sum = timer.getSum();
+            long count = timer.getCount();
+            long nanos = sum - phaseSums[i];
+            long ticks = count - phaseCounts[i];
+            this.phaseSums[i] = sum;
+            this.phaseCounts[i] = count;
+            text.append(String.format("%s %.1f ms/s (%.0f us)   ", PHASE_NAMES[i], nanos * 1e3 / elapsed, ticks == 0 ? 0 : nanos / 1e3 / ticks));
+        }
+        return text.toString().trim();
+    }
+
+    /**
+     * Fit board (if it follows the window) and canvas to the current window size
+     */
+    private void applyWindowSize() {
+        simulation.edit(() -> {
+            ResizeEvent event = new ResizeEvent();
+            event.begin();
+            int oldWidth = this.world.getXLength();
+            int oldHeight = this.world.getYLength();
+            if (view.followWindow) {
+                this.world.setBoardSize((int) view.pane.getWidth() / (int) view.cellSize, (int) view.pane.getHeight() / (int) view.cellSize);
+            }
+            this.view.resizeCanvas(this.world.getXLength(), this.world.getYLength());
+            this.view.refresh(this.world);
+            event.end();
+            if (event.shouldCommit()) {
+                event.engine = this.world.getClass().getSimpleName();
+                event.oldWidth = oldWidth;
+                event.oldHeight = oldHeight;
+                event.newWidth = this.world.getXLength();
+                event.newHeight = this.world.getYLength();
+                event.commit();
+            }
+        });
+    }
+
+    /**
+     * Record trail and running recording (called after each generation, world is locked)
+     */
+    private void afterGeneration() {
+        RecordingWriter writer = recorder;
+        boolean trail = view.isTrailRecorded();
+        if (writer == null && !trail) {
+            return;
+        }
+        Snapshot snapshot = this.world.snapshot();
+        if (trail) {
+            view.trailMap.record(snapshot);
+        }
+        if (writer != null) {
+            try {
+                writer.append(snapshot);
+            } catch (IOException | IllegalArgumentException e) {
+                // Write error or board resized, keep what was recorded so far
+                e.printStackTrace();
+                stopRecording();
+            }
+        }
+    }
+
+    /**
+     * Close the running recording (world must be locked)
+     */
+    private void stopRecording() {
+        try {
+            recorder.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        this.recorder = null;
+        Platform.runLater(() -> view.menuItemRecord.setText("Start Recording..."));
+    }
+
+    /**
+     * Replace world with a newly opened one
+     *
+     * @param newWorld world read from file
+     */
+    private void openWorld(Buildable newWorld) {
+        simulation.pause();
+        view.trailMap.clear();
+        simulation.edit(() -> {
+            if (recorder != null) {
+                stopRecording();
+            }
+            this.world.removeListener(this.display);
+            this.world = newWorld;
+            this.world.setTorus(view.torus.getValue());
+            this.world.addListener(this.display, Platform::runLater);
+            simulation.setWorld(this.world);
+            simulation.setGeneration(0);
+        });
+        simulation.takeFrame();
+        view.setPlaying(false);
+        view.currentGeneration.setValue(0);
+        view.aliveCells.setValue(this.world.getDensityTiles().getPopulation());
+        Rectangle2D screen = Screen.getPrimary().getVisualBounds();
+        if (this.world.getXLength() * view.cellSize > screen.getWidth() || this.world.getYLength() * view.cellSize > screen.getHeight()) {
+            // Board does not fit on screen, show it in the free viewport instead of growing the window
+            view.fitBoard.setSelected(false);
+            this.view.resizeCanvas(this.world.getXLength(), this.world.getYLength());
+            view.fitViewport();
+        } else {
+            view.fitBoard.setSelected(true);
+            view.resizeStage();
+            this.view.resizeCanvas(this.world.getXLength(), this.world.getYLength());
+        }
+        this.view.refresh(this.world);
+    }
+
+    /**
+     * Replace world by the same board in another engine, keeping surface mode and generation
+     * (board is copied as words, a running simulation only waits for the copy)
+     *
+     * @param name engine name (one of Engines.NAMES)
+     */
+    private void switchEngine(String name) {
+        simulation.edit(() -> {
+            Snapshot snapshot = this.world.snapshot();
+            Buildable engine = Engines.create(name, snapshot);
+            engine.setTorus(this.world.isTorus());
+            this.world.removeListener(this.display);
+            this.world = engine;
+            this.world.addListener(this.display, Platform::runLater);
+            simulation.setWorld(this.world);
+            view.refresh(this.world);
+        });
+    }
+
+    /**
+     * Switch between board following the window and free viewport
+     *
+     * @param follow true = board is resized with the window, false = zoom and pan over a board of fixed size
+     */
+    private void setFollowWindow(boolean follow) {
+        if (view.followWindow == follow) {
+            return;
+        }
+        view.followWindow = follow;
+        if (!follow) {
+            view.zoom = view.cellSize;
+            view.viewX = 0;
+            view.viewY = 0;
+        }
+        applyWindowSize();
+    }
+
+    /**
+     * Start drawing at a canvas position: the cell under the mouse is toggled, the rest of the stroke gets its new state
+     *
+     * @param x canvas x coordinate
+     * @param y canvas y coordinate
+     */
+    private void beginStroke(double x, double y) {
+        flushStroke();
+        int[] cell = view.cellAt(x, y);
+        this.strokeCell = cell;
+        if (cell != null) {
+            boolean[] alive = new boolean[1];
+            simulation.edit(() -> alive[0] = this.world.snapshot(cell[0], cell[1], 1, 1).isAlive(0, 0));
+            this.strokeAlive = !alive[0];
+            stroke.set(cell[0], cell[1], strokeAlive);
+        }
+    }
+
+    /**
+     * Continue drawing to a canvas position, cells are queued until the next display pulse
+     *
+     * @param x canvas x coordinate
+     * @param y canvas y coordinate
+     */
+    private void continueStroke(double x, double y) {
+        int[] cell = view.cellAt(x, y);
+        if (cell == null || strokeCell == null || (cell[0] == strokeCell[0] && cell[1] == strokeCell[1])) {
+            return;
+        }
+        // Fill cells between two mouse events, fast strokes stay connected
+        int dx = cell[0] - strokeCell[0];
+        int dy = cell[1] - strokeCell[1];
+        int steps = Math.max(Math.abs(dx), Math.abs(dy));
+        for (int i = 1; i <= steps; i++) {
+            stroke.set(strokeCell[0] + Math.round((float) dx * i / steps), strokeCell[1] + Math.round((float) dy * i / steps), strokeAlive);
+        }
+        this.strokeCell = cell;
+    }
+
+    /**
+     * Apply queued cells of the current stroke in one edit
+     */
+    private void flushStroke() {
+        if (stroke.size() == 0) {
+            return;
+        }
+        simulation.edit(() -> this.world.setCells(stroke));
+        stroke.clear();
+    }
+
+    /**
+     * Paint current generation after the viewport moved (the pulse only paints new generations)
+     */
+    private void redraw() {
+        simulation.read(() -> {
+            // While playing the world may be ahead, the displayed generation is painted instead
+            Simulation.Frame displayed = simulation.getDisplayed(view.regionX(), view.regionY(), view.regionWidth(), view.regionHeight());
+            if (displayed != null) {
+                view.refresh(displayed.snapshot, displayed.tiles);
+            } else {
+                view.refresh(this.world);
+            }
+        });
+    }
+
+    /**
+     * Run save/open in the background, show progress until it is done
+     *
+     * @param task background task
+     */
+    private void runIOTask(Task<?> task) {
+        if (ioTask != null && ioTask.isRunning()) {
+            ioTask.cancel();
+        }
+        this.ioTask = task;
+        view.ioProgress.progressProperty().bind(task.progressProperty());
+        view.ioProgress.setVisible(true);
+        task.runningProperty().addListener((observable, oldValue, newValue) -> {
+            if (!newValue && ioTask == task) {
+                view.ioProgress.progressProperty().unbind();
+                view.ioProgress.setVisible(false);
+            }
+        });
+        task.setOnFailed(e -> task.getException().printStackTrace());
+        ioExecutor.execute(task);
     }
 }
@@ -0,0 +1,68 @@
+package controller;
+
+import model.BitSetModel;
+import model.BlockedModel;
+import model.BooleanModel;
+import model.Buildable;
+import model.Snapshot;
+import model.TiledModel;
+
+/**
+ * Engines selectable by name in the headless modes (verify, bench, serve)
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public class Engines {
+    public static final String[] NAMES = {"BooleanModel", "BitSetModel", "TiledModel", "BlockedModel"};
+
+    /**
+     * Create engine
+     *
+     * @param name     engine name (one of NAMES)
+     * @param snapshot initial board
+     * @return world with the cells of the snapshot
+     */
+    public static Buildable create(String name, Snapshot snapshot) {
+        switch (name) {
+            case "BooleanModel":
+                return new BooleanModel(snapshot);
+            case "BitSetModel":
+                return new BitSetModel(snapshot);
+            case "TiledModel":
+                return new TiledModel(snapshot);
+            case "BlockedModel":
+                return new BlockedModel(snapshot);
+            default:
+                throw new IllegalArgumentException("Unknown engine: " + name + " (one of " + String.join(", ", NAMES) + ")");
+        }
+    }
+
+    /**
+     * Estimate memory of a world while it is developed (board, buffers and density tiles)
+     *
+     * @param name    engine name (one of NAMES)
+     * @param xLength width of board
+     * @param yLength height of board
+     * @return estimated bytes
+     */
+    public static long estimateBytes(String name, int xLength, int yLength) {
+        long cells = (long) xLength * yLength;
+        long bitsPerCell;
+        switch (name) {
+            case "BooleanModel":
+                // One byte per cell, current and next board
+                bitsPerCell = 16;
+                break;
+            case "BitSetModel":
+            case "TiledModel":
+            case "BlockedModel":
+                // One bit per cell, current board and next board (or results)
+                bitsPerCell = 2;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown engine: " + name + " (one of " + String.join(", ", NAMES) + ")");
+        }
+        // Density tiles: one int per 8x8 cells, current and next
+        return cells * bitsPerCell / 8 + cells / 64 * 4 * 2 + 4096;
+    }
+}
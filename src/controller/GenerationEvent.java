@@ -0,0 +1,40 @@
+package controller;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for developing one generation (or several in one call)
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+@Name("gameoflife.Generation")
+@Label("Generation")
+@Category("Game of Life")
+@Description("One generation developed by an engine")
+public class GenerationEvent extends Event {
+    @Label("Engine")
+    public String engine;
+
+    @Label("Width")
+    public int width;
+
+    @Label("Height")
+    public int height;
+
+    @Label("Population")
+    public int population;
+
+    @Label("Births")
+    public int births;
+
+    @Label("Deaths")
+    public int deaths;
+
+    @Label("Generations")
+    @Description("Generations developed in one call")
+    public int generations;
+}
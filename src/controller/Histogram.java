@@ -0,0 +1,156 @@
+package controller;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram of durations (or any non-negative values) with percentiles
+ * <p>
+ * Values are counted in buckets of 4 per power of two, percentiles are the upper bound of their bucket
+ * (at most 25 % too high). Recording allocates nothing.
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public class Histogram {
+    private static final int SUB_BITS = 2;
+    private static final int SUB_MASK = (1 << SUB_BITS) - 1;
+    private final AtomicLongArray buckets = new AtomicLongArray(64 << SUB_BITS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Count a value
+     *
+     * @param value value, negative values count as 0
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        buckets.incrementAndGet(bucket(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * Count the same value several times in one go
+     *
+     * @param value value, negative values count as 0
+     * @param times number of times the value is counted
+     */
+    public void record(long value, long times) {
+        if (times <= 0) {
+            return;
+        }
+        value = Math.max(0, value);
+        buckets.addAndGet(bucket(value), times);
+        count.addAndGet(times);
+        sum.addAndGet(value * times);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * Forget all values
+     */
+    public void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /**
+     * Get number of values
+     *
+     * @return count
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Get sum of all values
+     *
+     * @return sum
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * Get mean of all values
+     *
+     * @return mean, 0 if empty
+     */
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * Get largest value
+     *
+     * @return maximum, 0 if empty
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Get percentile
+     *
+     * @param percentile percentile (0..100)
+     * @return value not exceeded by the given share of values (upper bound of its bucket), 0 if empty
+     */
+    public long getPercentile(double percentile) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Get bucket of a value
+     *
+     * @param value non-negative value
+     * @return bucket index
+     */
+    private static int bucket(long value) {
+        if (value <= SUB_MASK) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & SUB_MASK;
+        return ((exponent - SUB_BITS + 1) << SUB_BITS) + sub;
+    }
+
+    /**
+     * Get largest value counted in a bucket
+     *
+     * @param bucket bucket index
+     * @return upper bound (inclusive)
+     */
+    private static long upperBound(int bucket) {
+        if (bucket <= SUB_MASK) {
+            return bucket;
+        }
+        int exponent = (bucket >> SUB_BITS) + SUB_BITS - 1;
+        long first = (long) ((1 << SUB_BITS) | (bucket & SUB_MASK)) << (exponent - SUB_BITS);
+        return first + (1L << (exponent - SUB_BITS)) - 1;
+    }
+}
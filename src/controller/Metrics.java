@@ -0,0 +1,477 @@
+package controller;
+
+import model.Buildable;
+import model.TiledModel;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process registry of runtime metrics: developed generations and timers for painting and file IO
+ * <p>
+ * Cheap enough to stay on: recording a generation takes two clock reads, two allocation counter reads and a few
+ * atomic increments. Registered as JMX MBean GameOfLife:type=Metrics on first use.
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public class Metrics implements MetricsMBean {
+    public static final String GENERATION = "generation";
+    public static final String REFRESH = "refresh";
+    public static final String OPEN = "open";
+    public static final String SAVE = "save";
+    // Phases of a tick besides GENERATION (compute, including listener notification) and REFRESH (paint)
+    public static final String RECORD = "record";
+    public static final String COPY = "copy";
+    public static final String PRINT = "print";
+
+    private static final long RATE_WINDOW_NANOS = 1_000_000_000L;
+    private static Metrics instance;
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    private final Map<String, Histogram> timers = new ConcurrentHashMap<>();
+    private final Histogram generationNanos = timer(GENERATION);
+    private final AtomicLong generations = new AtomicLong();
+    private final AtomicLong cells = new AtomicLong();
+    private final AtomicLong totalBirths = new AtomicLong();
+    private final AtomicLong totalDeaths = new AtomicLong();
+    // Set once generations were developed several per call, their births and deaths are partly missing
+    private volatile boolean approximateTotals;
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private final AtomicLong tilesComputed = new AtomicLong();
+    private final AtomicLong tilesSkipped = new AtomicLong();
+    private final AtomicLong stolenTasks = new AtomicLong();
+    private volatile int population;
+    private volatile int births;
+    private volatile int deaths;
+    // Generations per second, guarded by this
+    private long windowStart = System.nanoTime();
+    private long windowGenerations;
+    private volatile double generationsPerSecond;
+
+    /**
+     * Get registry (registered as MBean on first call)
+     *
+     * @return metrics of this JVM
+     */
+    public static synchronized Metrics get() {
+        if (instance == null) {
+            instance = new Metrics();
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(instance, new ObjectName("GameOfLife:type=Metrics"));
+            } catch (JMException | SecurityException e) {
+                // Metrics stay available in-process
+                e.printStackTrace();
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Develop one generation and record its duration, allocation and population changes
+     *
+     * @param world instance of Buildable
+     */
+    public void developGeneration(Buildable world) {
+        developGenerations(world, 1);
+    }
+
+    /**
+     * Develop several generations in one call (engines may develop them in fewer passes over the board),
+     * recorded as that many generations of the mean duration; births and deaths are only known for the last
+     * generation, so the totals miss those of the generations before it
+     *
+     * @param world       instance of Buildable
+     * @param generations number of generations
+     */
+    public void developGenerations(Buildable world, int generations) {
+        if (generations <= 0) {
+            return;
+        }
+        GenerationEvent event = new GenerationEvent();
+        long allocatedBefore = allocatedBytes();
+        event.begin();
+        long start = System.nanoTime();
+        if (generations == 1) {
+            world.developGeneration();
+        } else {
+            world.developGenerations(generations);
+        }
+        long end = System.nanoTime();
+        event.end();
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        generationNanos.record((end - start) / generations, generations);
+        this.generations.addAndGet(generations);
+        cells.addAndGet((long) world.getXLength() * world.getYLength() * generations);
+        allocatedBytes.addAndGet(allocatedBefore < 0 ? 0 : allocated);
+        this.births = world.getBirths();
+        this.deaths = world.getDeaths();
+        this.population = world.getDensityTiles().getPopulation();
+        totalBirths.addAndGet(births);
+        totalDeaths.addAndGet(deaths);
+        if (generations > 1) {
+            this.approximateTotals = true;
+        }
+        countForRate(end, generations);
+        if (world instanceof TiledModel) {
+            TiledModel tiled = (TiledModel) world;
+            tilesComputed.addAndGet(tiled.getTilesComputed());
+            tilesSkipped.addAndGet(tiled.getTilesSkipped());
+            stolenTasks.addAndGet(tiled.getStolenTasks());
+        }
+        if (event.shouldCommit()) {
+            event.engine = world.getClass().getSimpleName();
+            event.width = world.getXLength();
+            event.height = world.getYLength();
+            event.population = population;
+            event.births = births;
+            event.deaths = deaths;
+            event.generations = generations;
+            event.commit();
+        }
+    }
+
+    /**
+     * Record duration of an operation
+     *
+     * @param name  timer name, e.g. REFRESH
+     * @param nanos duration
+     */
+    public void time(String name, long nanos) {
+        timer(name).record(nanos);
+    }
+
+    /**
+     * Get timer, created on first use
+     *
+     * @param name timer name
+     * @return histogram of durations in nanoseconds
+     */
+    public Histogram timer(String name) {
+        return timers.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    /**
+     * Describe phases as table: count, total, mean and percentiles of each, and its share of the total time
+     *
+     * @param phases timer names
+     * @return table, one phase per line
+     */
+    public String phaseTable(String... phases) {
+        long total = 0;
+        for (String phase : phases) {
+            total += timer(phase).getSum();
+        }
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.ROOT, "%-10s %10s %12s %10s %10s %10s %7s%n", "phase", "count", "total ms", "mean us", "p50 us", "p99 us", "share"));
+        for (String phase : phases) {
+            Histogram timer = timer(phase);
+            text.append(String.format(Locale.ROOT, "%-10s %10d %12.1f %10.1f %10.1f %10.1f %6.1f%%%n", phase, timer.getCount(),
+                    timer.getSum() / 1e6, timer.getMean() / 1e3, timer.getPercentile(50) / 1e3, timer.getPercentile(99) / 1e3,
+                    total == 0 ? 0 : 100.0 * timer.getSum() / total));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Update generations per second once per window
+     *
+     * @param now         current time (System.nanoTime)
+     * @param generations generations developed since the last call
+     */
+    private synchronized void countForRate(long now, int generations) {
+        windowGenerations += generations;
+        long elapsed = now - windowStart;
+        if (elapsed >= RATE_WINDOW_NANOS) {
+            this.generationsPerSecond = windowGenerations * 1e9 / elapsed;
+            this.windowStart = now;
+            this.windowGenerations = 0;
+        }
+    }
+
+    /**
+     * Get bytes allocated by the current thread so far
+     *
+     * @return bytes, -1 if not measured by this JVM
+     */
+    private static long allocatedBytes() {
+        return THREADS == null ? -1 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Get allocation counter of HotSpot based JVMs
+     *
+     * @return thread bean, null if allocation is not measured
+     */
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        try {
+            java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (threads instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+                if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                    return hotspot;
+                }
+            }
+        } catch (LinkageError e) {
+            // Not a HotSpot JVM
+        }
+        return null;
+    }
+
+    /**
+     * Get number of generations developed
+     *
+     * @return generations
+     */
+    @Override
+    public long getGenerations() {
+        return generations.get();
+    }
+
+    /**
+     * Get generations per second, measured over the last full second
+     *
+     * @return generations per second
+     */
+    @Override
+    public synchronized double getGenerationsPerSecond() {
+        if (generationsPerSecond == 0 && windowGenerations > 0) {
+            // Shorter than one window so far
+            return windowGenerations * 1e9 / Math.max(1, System.nanoTime() - windowStart);
+        }
+        return generationsPerSecond;
+    }
+
+    /**
+     * Get mean duration of a generation
+     *
+     * @return nanoseconds
+     */
+    @Override
+    public double getGenerationNanosMean() {
+        return generationNanos.getMean();
+    }
+
+    /**
+     * Get median duration of a generation
+     *
+     * @return nanoseconds
+     */
+    @Override
+    public long getGenerationNanosP50() {
+        return generationNanos.getPercentile(50);
+    }
+
+    /**
+     * Get 90th percentile of the duration of a generation
+     *
+     * @return nanoseconds
+     */
+    @Override
+    public long getGenerationNanosP90() {
+        return generationNanos.getPercentile(90);
+    }
+
+    /**
+     * Get 99th percentile of the duration of a generation
+     *
+     * @return nanoseconds
+     */
+    @Override
+    public long getGenerationNanosP99() {
+        return generationNanos.getPercentile(99);
+    }
+
+    /**
+     * Get longest duration of a generation
+     *
+     * @return nanoseconds
+     */
+    @Override
+    public long getGenerationNanosMax() {
+        return generationNanos.getMax();
+    }
+
+    /**
+     * Get mean duration per cell of the board
+     *
+     * @return nanoseconds
+     */
+    @Override
+    public double getNanosPerCell() {
+        long n = cells.get();
+        return n == 0 ? 0 : generationNanos.getMean() * generationNanos.getCount() / n;
+    }
+
+    /**
+     * Get population after the last generation
+     *
+     * @return living cells
+     */
+    @Override
+    public int getPopulation() {
+        return population;
+    }
+
+    /**
+     * Get cells born in the last generation
+     *
+     * @return births
+     */
+    @Override
+    public int getBirths() {
+        return births;
+    }
+
+    /**
+     * Get cells died in the last generation
+     *
+     * @return deaths
+     */
+    @Override
+    public int getDeaths() {
+        return deaths;
+    }
+
+    /**
+     * Get cells born in all generations (approximate after multi-generation steps, only the last generation of
+     * such a step is counted)
+     *
+     * @return births
+     */
+    @Override
+    public long getTotalBirths() {
+        return totalBirths.get();
+    }
+
+    /**
+     * Get cells died in all generations (approximate after multi-generation steps, only the last generation of
+     * such a step is counted)
+     *
+     * @return deaths
+     */
+    @Override
+    public long getTotalDeaths() {
+        return totalDeaths.get();
+    }
+
+    /**
+     * Get mean bytes allocated by developing a generation
+     *
+     * @return bytes, -1 if the JVM does not measure allocation
+     */
+    @Override
+    public double getAllocatedBytesPerGeneration() {
+        long n = generations.get();
+        if (THREADS == null) {
+            return -1;
+        }
+        return n == 0 ? 0 : (double) allocatedBytes.get() / n;
+    }
+
+    /**
+     * Get median duration of painting a frame
+     *
+     * @return nanoseconds
+     */
+    @Override
+    public long getRefreshNanosP50() {
+        return timer(REFRESH).getPercentile(50);
+    }
+
+    /**
+     * Get 99th percentile of the duration of painting a frame
+     *
+     * @return nanoseconds
+     */
+    @Override
+    public long getRefreshNanosP99() {
+        return timer(REFRESH).getPercentile(99);
+    }
+
+    /**
+     * Get number of tiles developed by the tiled engine
+     *
+     * @return active tiles summed over all generations
+     */
+    @Override
+    public long getTilesComputed() {
+        return tilesComputed.get();
+    }
+
+    /**
+     * Get number of idle tiles skipped by the tiled engine
+     *
+     * @return skipped tiles summed over all generations
+     */
+    @Override
+    public long getTilesSkipped() {
+        return tilesSkipped.get();
+    }
+
+    /**
+     * Get number of tasks of the tiled engine stolen by another pool thread
+     *
+     * @return stolen tasks summed over all generations
+     */
+    @Override
+    public long getStolenTasks() {
+        return stolenTasks.get();
+    }
+
+    /**
+     * Describe all metrics
+     *
+     * @return one metric per line
+     */
+    @Override
+    public String dump() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.ROOT, "generations               %d%n", getGenerations()));
+        text.append(String.format(Locale.ROOT, "generations/sec           %.1f%n", getGenerationsPerSecond()));
+        text.append(String.format(Locale.ROOT, "ns/cell                   %.3f%n", getNanosPerCell()));
+        text.append(String.format(Locale.ROOT, "population                %d%n", getPopulation()));
+        text.append(String.format(Locale.ROOT, "births/deaths (last)      %d / %d%n", getBirths(), getDeaths()));
+        text.append(String.format(Locale.ROOT, "births/deaths (total)     %d / %d%s%n", getTotalBirths(), getTotalDeaths(),
+                approximateTotals ? " (last generation of multi-generation steps only)" : ""));
+        text.append(String.format(Locale.ROOT, "allocated bytes/gen       %.0f%n", getAllocatedBytesPerGeneration()));
+        if (getTilesComputed() + getTilesSkipped() > 0) {
+            text.append(String.format(Locale.ROOT, "tiles computed/skipped    %d / %d%n", getTilesComputed(), getTilesSkipped()));
+            text.append(String.format(Locale.ROOT, "stolen tasks              %d%n", getStolenTasks()));
+        }
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(timers).entrySet()) {
+            Histogram timer = entry.getValue();
+            if (timer.getCount() > 0) {
+                text.append(String.format(Locale.ROOT, "%-9s ns  n=%d mean=%.0f p50=%d p90=%d p99=%d max=%d%n", entry.getKey(),
+                        timer.getCount(), timer.getMean(), timer.getPercentile(50), timer.getPercentile(90),
+                        timer.getPercentile(99), timer.getMax()));
+            }
+        }
+        return text.toString();
+    }
+
+    @Override
+    public synchronized void reset() {
+        for (Histogram timer : timers.values()) {
+            timer.reset();
+        }
+        generations.set(0);
+        cells.set(0);
+        totalBirths.set(0);
+        totalDeaths.set(0);
+        this.approximateTotals = false;
+        allocatedBytes.set(0);
+        tilesComputed.set(0);
+        tilesSkipped.set(0);
+        stolenTasks.set(0);
+        this.generationsPerSecond = 0;
+        this.windowStart = System.nanoTime();
+        this.windowGenerations = 0;
+    }
+}
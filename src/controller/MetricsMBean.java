@@ -0,0 +1,156 @@
+package controller;
+
+/**
+ * JMX view of the simulation metrics (object name GameOfLife:type=Metrics)
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public interface MetricsMBean {
+
+    /**
+     * Get number of generations developed
+     *
+     * @return generations
+     */
+    long getGenerations();
+
+    /**
+     * Get generations per second, measured over the last full second
+     *
+     * @return generations per second
+     */
+    double getGenerationsPerSecond();
+
+    /**
+     * Get mean duration of a generation
+     *
+     * @return nanoseconds
+     */
+    double getGenerationNanosMean();
+
+    /**
+     * Get median duration of a generation
+     *
+     * @return nanoseconds
+     */
+    long getGenerationNanosP50();
+
+    /**
+     * Get 90th percentile of the duration of a generation
+     *
+     * @return nanoseconds
+     */
+    long getGenerationNanosP90();
+
+    /**
+     * Get 99th percentile of the duration of a generation
+     *
+     * @return nanoseconds
+     */
+    long getGenerationNanosP99();
+
+    /**
+     * Get longest duration of a generation
+     *
+     * @return nanoseconds
+     */
+    long getGenerationNanosMax();
+
+    /**
+     * Get mean duration per cell of the board
+     *
+     * @return nanoseconds
+     */
+    double getNanosPerCell();
+
+    /**
+     * Get population after the last generation
+     *
+     * @return living cells
+     */
+    int getPopulation();
+
+    /**
+     * Get cells born in the last generation
+     *
+     * @return births
+     */
+    int getBirths();
+
+    /**
+     * Get cells died in the last generation
+     *
+     * @return deaths
+     */
+    int getDeaths();
+
+    /**
+     * Get cells born in all generations (approximate after multi-generation steps, only the last generation of
+     * such a step is counted)
+     *
+     * @return births
+     */
+    long getTotalBirths();
+
+    /**
+     * Get cells died in all generations (approximate after multi-generation steps, only the last generation of
+     * such a step is counted)
+     *
+     * @return deaths
+     */
+    long getTotalDeaths();
+
+    /**
+     * Get mean bytes allocated by developing a generation
+     *
+     * @return bytes, -1 if the JVM does not measure allocation
+     */
+    double getAllocatedBytesPerGeneration();
+
+    /**
+     * Get median duration of painting a frame
+     *
+     * @return nanoseconds
+     */
+    long getRefreshNanosP50();
+
+    /**
+     * Get 99th percentile of the duration of painting a frame
+     *
+     * @return nanoseconds
+     */
+    long getRefreshNanosP99();
+
+    /**
+     * Get number of tiles developed by the tiled engine
+     *
+     * @return active tiles summed over all generations
+     */
+    long getTilesComputed();
+
+    /**
+     * Get number of idle tiles skipped by the tiled engine
+     *
+     * @return skipped tiles summed over all generations
+     */
+    long getTilesSkipped();
+
+    /**
+     * Get number of tasks of the tiled engine stolen by another pool thread
+     *
+     * @return stolen tasks summed over all generations
+     */
+    long getStolenTasks();
+
+    /**
+     * Describe all metrics
+     *
+     * @return one metric per line
+     */
+    String dump();
+
+    /**
+     * Forget all measured values
+     */
+    void reset();
+}
@@ -0,0 +1,50 @@
+package controller;
+
+import javafx.concurrent.Task;
+import model.BooleanModel;
+import model.Buildable;
+import model.PatternLibrary;
+import model.Snapshot;
+
+/**
+ * Background task reading a file and building a new world from it
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public class OpenTask extends Task<Buildable> {
+    private final PatternLibrary library;
+    private final String inputPath;
+
+    /**
+     * Constructor
+     *
+     * @param library   pattern library (parsed boards are cached there)
+     * @param inputPath path to file
+     */
+    public OpenTask(PatternLibrary library, String inputPath) {
+        this.library = library;
+        this.inputPath = inputPath;
+        updateTitle("Opening " + inputPath);
+    }
+
+    /**
+     * Read file and create world
+     *
+     * @return world with living cells from file
+     * @throws Exception error while reading file
+     */
+    @Override
+    protected Buildable call() throws Exception {
+        long start = System.nanoTime();
+        // Progress and cancel while the file is parsed, a cached board is returned at once
+        Snapshot snapshot = library.load(inputPath, (done, total) -> {
+            updateProgress(done, total);
+            return !isCancelled();
+        });
+        Metrics.get().time(Metrics.OPEN, System.nanoTime() - start);
+        if (isCancelled()) {
+            return null;
+        }
+        return new BooleanModel(snapshot);
+    }
+}
@@ -0,0 +1,33 @@
+package controller;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for fitting board and canvas to a new window size
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+@Name("gameoflife.Resize")
+@Label("Resize")
+@Category("Game of Life")
+@Description("Board and canvas fitted to the window")
+public class ResizeEvent extends Event {
+    @Label("Engine")
+    public String engine;
+
+    @Label("Old Width")
+    public int oldWidth;
+
+    @Label("Old Height")
+    public int oldHeight;
+
+    @Label("New Width")
+    public int newWidth;
+
+    @Label("New Height")
+    public int newHeight;
+}
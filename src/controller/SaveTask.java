@@ -0,0 +1,44 @@
+package controller;
+
+import javafx.concurrent.Task;
+import model.InputOutput;
+import model.Snapshot;
+
+/**
+ * Background task writing a board snapshot to file
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public class SaveTask extends Task<Void> {
+    private final Snapshot snapshot;
+    private final String outputPath;
+
+    /**
+     * Constructor
+     *
+     * @param snapshot   board to write (taken on the application thread)
+     * @param outputPath specified output path
+     */
+    public SaveTask(Snapshot snapshot, String outputPath) {
+        this.snapshot = snapshot;
+        this.outputPath = outputPath;
+        updateTitle("Saving " + outputPath);
+    }
+
+    /**
+     * Write file
+     *
+     * @return nothing
+     * @throws Exception error while writing file
+     */
+    @Override
+    protected Void call() throws Exception {
+        long start = System.nanoTime();
+        InputOutput.createFile(snapshot, outputPath, (done, total) -> {
+            updateProgress(done, total);
+            return !isCancelled();
+        });
+        Metrics.get().time(Metrics.SAVE, System.nanoTime() - start);
+        return null;
+    }
+}
@@ -0,0 +1,243 @@
+package controller;
+
+import model.Buildable;
+import model.InputOutput;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sharded run: the board is split into horizontal strips, each developed by its own worker process (ShardWorker)
+ * <p>
+ * Workers exchange their edge rows every generation over localhost TCP (on a torus the last strip is the neighbour
+ * of the first one), the coordinator collects population per generation and the final rows and writes the output file.
+ * Workers hold only their strip and the coordinator streams the board from the input file to the workers and from the
+ * workers to the output file, so the board may be larger than any single heap (--check loads it whole to compare).
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public class ShardCoordinator {
+    private static final int ACCEPT_TIMEOUT_MILLIS = 60_000;
+
+    /**
+     * Process shard arguments: --shards input torus generations output shards [--worker-heap=size] [--check]
+     *
+     * @param args program arguments
+     * @return false if the check against the single process engine failed
+     * @throws IOException file can't be read or written, or a worker failed
+     */
+    public static boolean run(String[] args) throws IOException {
+        HashMap<String, String> options = new HashMap<>();
+        args = CLI.parseOptions(args, options);
+        if (args.length != 5) {
+            System.out.println("--shards ARG1: filepath (.txt)");
+            System.out.println("         ARG2: torus (boolean - true = Torus, false = Hard limit)");
+            System.out.println("         ARG3: generation (int)");
+            System.out.println("         ARG4: output path (.txt)");
+            System.out.println("         ARG5: worker processes (int)");
+            System.out.println("         --worker-heap=size: maximum heap per worker (e.g. 2g)");
+            System.out.println("         --check: compare result with the single process engine");
+            System.out.println();
+            return false;
+        }
+        String inputPath = args[0];
+        boolean torus = Boolean.parseBoolean(args[1]);
+        int generations = Integer.parseInt(args[2]);
+        String outputPath = args[3];
+        int[] size = InputOutput.readSize(inputPath);
+        int shards = Math.max(1, Math.min(Integer.parseInt(args[4]), size[1]));
+
+        // The check needs the whole board in this process, the sharded run itself streams it
+        Buildable reference = null;
+        if (options.containsKey("check")) {
+            reference = Engines.create("BooleanModel", InputOutput.readSnapshot(inputPath, (done, total) -> true));
+            reference.setTorus(torus);
+            for (int i = 0; i < generations; i++) {
+                reference.developGeneration();
+            }
+        }
+
+        long start = System.nanoTime();
+        long population = develop(inputPath, size[0], size[1], torus, generations, shards, options.get("worker-heap"), outputPath);
+        long elapsed = System.nanoTime() - start;
+        System.out.println(generations + " generations of " + size[0] + "x" + size[1] + " on " + shards
+                + " workers in " + elapsed / 1_000_000 + " ms, population " + population + ", output: " + outputPath);
+
+        if (reference != null) {
+            String difference = Verifier.compare(reference.snapshot(), InputOutput.readSnapshot(outputPath, (done, total) -> true));
+            System.out.println(difference == null ? "check: same result as BooleanModel" : "check FAILED: " + difference);
+            return difference == null;
+        }
+        return true;
+    }
+
+    /**
+     * Develop a board in worker processes, the board is streamed from the input file to the workers and from the
+     * workers to the output file (this process never holds more than one row)
+     *
+     * @param inputPath   file with the initial board
+     * @param xLength     width of board
+     * @param yLength     height of board
+     * @param torus       surface mode
+     * @param generations number of generations
+     * @param shards      number of workers (at most one per row)
+     * @param workerHeap  maximum heap per worker (-Xmx value), null = JVM default
+     * @param outputPath  file for the board after the last generation
+     * @return population after the last generation
+     * @throws IOException a file can't be read or written, or a worker could not be started or failed
+     */
+    static long develop(String inputPath, int xLength, int yLength, boolean torus, int generations, int shards, String workerHeap,
+                        String outputPath) throws IOException {
+        int wordsPerRow = (xLength + 63) >>> 6;
+        List<Process> processes = new ArrayList<>();
+        Socket[] sockets = new Socket[shards];
+        try (ServerSocket server = new ServerSocket(0, shards, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(ACCEPT_TIMEOUT_MILLIS);
+            for (int i = 0; i < shards; i++) {
+                processes.add(startWorker(server.getLocalPort(), i, workerHeap));
+            }
+
+            // Workers report in any order
+            DataInputStream[] in = new DataInputStream[shards];
+            DataOutputStream[] out = new DataOutputStream[shards];
+            int[] haloPorts = new int[shards];
+            for (int i = 0; i < shards; i++) {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+                int index = input.readInt();
+                haloPorts[index] = input.readInt();
+                sockets[index] = socket;
+                in[index] = input;
+                out[index] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+            }
+
+            // Assign strips, the first (yLength % shards) strips get one row more
+            int[] firstRows = new int[shards + 1];
+            for (int i = 0; i < shards; i++) {
+                firstRows[i + 1] = firstRows[i] + yLength / shards + (i < yLength % shards ? 1 : 0);
+            }
+            for (int i = 0; i < shards; i++) {
+                boolean ring = torus && shards > 1;
+                out[i].writeInt(xLength);
+                out[i].writeInt(firstRows[i + 1] - firstRows[i]);
+                out[i].writeBoolean(torus);
+                out[i].writeInt(generations);
+                out[i].writeInt(i + 1 < shards ? haloPorts[i + 1] : ring ? haloPorts[0] : -1);
+                out[i].writeBoolean(i > 0 || ring);
+                out[i].writeBoolean(torus && shards == 1);
+            }
+            // Cells go to the worker of their row as they are read (files need not be sorted by row)
+            InputOutput.readCells(inputPath, (x, y) -> {
+                if (x < 0 || y < 0 || x >= xLength || y >= yLength) {
+                    throw new IOException("Cell (" + x + "," + y + ") outside the board in " + inputPath);
+                }
+                int shard = shardOf(firstRows, y);
+                out[shard].writeInt(x);
+                out[shard].writeInt(y - firstRows[shard]);
+            }, (done, total) -> true);
+            for (int i = 0; i < shards; i++) {
+                out[i].writeInt(-1);
+                out[i].flush();
+            }
+
+            // Population per generation
+            long population = -1;
+            for (int generation = 1; generation <= generations; generation++) {
+                population = 0;
+                long births = 0;
+                long deaths = 0;
+                for (int i = 0; i < shards; i++) {
+                    population += in[i].readLong();
+                    births += in[i].readLong();
+                    deaths += in[i].readLong();
+                }
+                if (generation % 1000 == 0 || generation == generations) {
+                    System.out.println("generation " + generation + ": population " + population + ", births " + births + ", deaths " + deaths);
+                }
+            }
+
+            // Result rows go straight to the output file, strips arrive top to bottom
+            return InputOutput.createFile(xLength, yLength, (y, row) -> {
+                DataInputStream input = in[shardOf(firstRows, y)];
+                for (int w = 0; w < wordsPerRow; w++) {
+                    row[w] = input.readLong();
+                }
+            }, outputPath, (done, total) -> true);
+        } finally {
+            for (Socket socket : sockets) {
+                if (socket != null) {
+                    socket.close();
+                }
+            }
+            stopWorkers(processes);
+        }
+    }
+
+    /**
+     * Find the strip of a row
+     *
+     * @param firstRows first row of every strip, followed by the height of the board
+     * @param y         row of the board
+     * @return strip index
+     */
+    private static int shardOf(int[] firstRows, int y) {
+        int index = Arrays.binarySearch(firstRows, y);
+        // Not a first row: the strip starting before it (strips are never empty)
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * Start worker process with the classpath of this JVM
+     *
+     * @param port       port of the coordinator
+     * @param index      strip index
+     * @param workerHeap maximum heap (-Xmx value), null = JVM default
+     * @return started process (output goes to the console of the coordinator)
+     * @throws IOException process can't be started
+     */
+    private static Process startWorker(int port, int index, String workerHeap) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        if (workerHeap != null) {
+            command.add("-Xmx" + workerHeap);
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        // Own main class, workers need no JavaFX
+        command.add(ShardWorker.class.getName());
+        command.add(String.valueOf(port));
+        command.add(String.valueOf(index));
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+
+    /**
+     * Wait for workers to exit (they exit after sending their result), kill them if they don't
+     *
+     * @param processes worker processes
+     */
+    private static void stopWorkers(List<Process> processes) {
+        for (Process process : processes) {
+            try {
+                if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package controller;
+
+import model.Strip;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Worker process of a sharded run: develops one horizontal strip of the board
+ * <p>
+ * Protocol (all on localhost, DataOutput encoding): the worker connects to the coordinator and sends its index and
+ * the port of its halo socket. The coordinator answers with the strip (width, rows, torus, generations,
+ * halo port of the worker below or -1, whether a worker above connects, whether the strip wraps onto itself) and its
+ * living cells as column and row, ended by column -1. Each generation the worker sends its first row to the worker
+ * above and its last row to the worker below, receives their edge rows as halo, steps, and reports population, births
+ * and deaths to the coordinator. After the last generation it sends its rows to the coordinator.
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public class ShardWorker {
+
+    /**
+     * Connection to a neighbouring worker, edge rows are exchanged through it
+     */
+    static class Link {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        /**
+         * Constructor
+         *
+         * @param socket connected socket
+         * @throws IOException error while opening streams
+         */
+        Link(Socket socket) throws IOException {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+        }
+
+        /**
+         * Send one row
+         *
+         * @param cells words of the strip
+         * @param from  first word of the row
+         * @param words words per row
+         * @throws IOException connection lost
+         */
+        void send(long[] cells, int from, int words) throws IOException {
+            for (int w = from; w < from + words; w++) {
+                out.writeLong(cells[w]);
+            }
+            out.flush();
+        }
+
+        /**
+         * Receive one row
+         *
+         * @param cells words of the strip
+         * @param from  first word of the row
+         * @param words words per row
+         * @throws IOException connection lost
+         */
+        void receive(long[] cells, int from, int words) throws IOException {
+            for (int w = from; w < from + words; w++) {
+                cells[w] = in.readLong();
+            }
+        }
+
+        /**
+         * Close connection
+         *
+         * @throws IOException error while closing
+         */
+        void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    /**
+     * Main of a worker process (started by ShardCoordinator)
+     *
+     * @param args coordinator port, strip index
+     */
+    public static void main(String[] args) {
+        try {
+            run(Integer.parseInt(args[0]), Integer.parseInt(args[1]));
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Develop one strip
+     *
+     * @param port  port of the coordinator
+     * @param index strip index
+     * @throws IOException connection to coordinator or neighbour lost
+     */
+    static void run(int port, int index) throws IOException {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        ExecutorService sender = Executors.newSingleThreadExecutor();
+        Link above = null;
+        Link below = null;
+        try (Socket socket = new Socket(loopback, port); ServerSocket haloServer = new ServerSocket(0, 1, loopback)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream coordinatorIn = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            DataOutputStream coordinatorOut = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+            coordinatorOut.writeInt(index);
+            coordinatorOut.writeInt(haloServer.getLocalPort());
+            coordinatorOut.flush();
+
+            // Assignment
+            int xLength = coordinatorIn.readInt();
+            int rows = coordinatorIn.readInt();
+            boolean torus = coordinatorIn.readBoolean();
+            int generations = coordinatorIn.readInt();
+            int belowPort = coordinatorIn.readInt();
+            boolean hasAbove = coordinatorIn.readBoolean();
+            boolean wrap = coordinatorIn.readBoolean();
+            Strip strip = new Strip(xLength, rows, torus);
+            int words = strip.getWordsPerRow();
+            // Living cells (column, row of the strip) in file order, column -1 ends them
+            int x;
+            while ((x = coordinatorIn.readInt()) >= 0) {
+                strip.setAlive(x, coordinatorIn.readInt());
+            }
+
+            // Connect to the worker below first, connecting does not wait for its accept
+            if (belowPort >= 0) {
+                below = new Link(new Socket(loopback, belowPort));
+            }
+            if (hasAbove) {
+                above = new Link(haloServer.accept());
+            }
+
+            for (int generation = 0; generation < generations; generation++) {
+                long[] cells = strip.getCells();
+                Link up = above;
+                Link down = below;
+                // Send in the background, two workers sending large rows to each other would block otherwise
+                Future<Void> sent = sender.submit(() -> {
+                    if (up != null) {
+                        up.send(cells, strip.offset(0), words);
+                    }
+                    if (down != null) {
+                        down.send(cells, strip.offset(rows - 1), words);
+                    }
+                    return null;
+                });
+                if (wrap) {
+                    strip.wrapHalo();
+                } else {
+                    if (above != null) {
+                        above.receive(cells, strip.offset(-1), words);
+                    } else {
+                        strip.clearHalo(true);
+                    }
+                    if (below != null) {
+                        below.receive(cells, strip.offset(rows), words);
+                    } else {
+                        strip.clearHalo(false);
+                    }
+                }
+                await(sent);
+                strip.step();
+                coordinatorOut.writeLong(strip.getPopulation());
+                coordinatorOut.writeLong(strip.getBirths());
+                coordinatorOut.writeLong(strip.getDeaths());
+                coordinatorOut.flush();
+            }
+
+            // Result
+            for (int row = 0; row < rows; row++) {
+                for (int w = 0; w < words; w++) {
+                    coordinatorOut.writeLong(strip.getCells()[strip.offset(row) + w]);
+                }
+            }
+            coordinatorOut.flush();
+        } finally {
+            sender.shutdownNow();
+            if (above != null) {
+                above.close();
+            }
+            if (below != null) {
+                below.close();
+            }
+        }
+    }
+
+    /**
+     * Wait until edge rows are sent
+     *
+     * @param sent background send
+     * @throws IOException sending failed
+     */
+    private static void await(Future<Void> sent) throws IOException {
+        try {
+            sent.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while sending edge rows", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Sending edge rows failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,599 @@
+package controller;
+
+import model.Bits;
+import model.BlockedModel;
+import model.Buildable;
+import model.CellBatch;
+import model.DensityTiles;
+import model.Snapshot;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Develop generations on a dedicated thread at a target rate and publish the newest one for display
+ * <p>
+ * A generation is only copied when the display asked for a new frame, generations in between are skipped.
+ * Changes to the world from other threads have to go through {@link #edit(Runnable)}.
+ * <p>
+ * With look-ahead the thread develops generations ahead of the display into a bounded ring of frames instead, and
+ * the display takes them at the target rate, so a slow generation does not delay the next frame. An edit, resize,
+ * surface change or pause throws the look-ahead away: the world goes back to the displayed generation first.
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public class Simulation {
+
+    /**
+     * Published generation
+     */
+    public static class Frame {
+        public final Snapshot snapshot;
+        public final DensityTiles tiles;
+        public final long generation;
+        // Whole board of look-ahead frames (the world goes back to it when the look-ahead is thrown away)
+        final Snapshot board;
+
+        /**
+         * Constructor
+         *
+         * @param snapshot   copy of the displayed region, null if only tiles are displayed
+         * @param tiles      copy of the tile summary of the whole board
+         * @param generation generation number
+         * @param board      copy of the whole board, null if not needed
+         */
+        Frame(Snapshot snapshot, DensityTiles tiles, long generation, Snapshot board) {
+            this.snapshot = snapshot;
+            this.tiles = tiles;
+            this.generation = generation;
+            this.board = board;
+        }
+    }
+
+    // Guards world and generation
+    private final Object lock = new Object();
+    private final Metrics metrics = Metrics.get();
+    private final AtomicReference<Frame> latest = new AtomicReference<>();
+    private final AtomicBoolean frameRequested = new AtomicBoolean(true);
+    private Buildable world;
+    private long generation;
+    private volatile double rate = 10;
+    private volatile Runnable onFinished;
+    private volatile Consumer<Buildable> stepListener;
+    private volatile BooleanSupplier stepListenerNeeded = () -> true;
+    // Displayed region {x, y, width, height}, width 0 = tiles only
+    private volatile int[] region = {0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE};
+    // Guarded by this
+    private boolean running;
+    private long remaining;
+    // Look-ahead frames, oldest first (guarded by itself, taken after lock when both are needed)
+    private static final long LOOK_AHEAD_BYTES = 64L << 20;
+    // Generations per pass at max speed when none is needed in between (the display shows only the newest)
+    private static final int MAX_SPEED_GENERATIONS = BlockedModel.DEPTH;
+    private final ArrayDeque<Frame> ahead = new ArrayDeque<>();
+    private volatile int lookAheadFrames;
+    private volatile BooleanSupplier lookAheadAllowed = () -> true;
+    // Guarded by ahead: generation the display shows (null = same as the world), end of a run of n generations
+    private Frame shown;
+    private long finishGeneration = -1;
+    // Display clock of the look-ahead (display thread only)
+    private long nextDue;
+
+    /**
+     * Constructor, starts the (paused) simulation thread
+     *
+     * @param world instance of Buildable
+     */
+    public Simulation(Buildable world) {
+        this.world = world;
+        Thread thread = new Thread(this::loop, "GameOfLife-Simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Run until paused
+     */
+    public void play() {
+        run(-1);
+    }
+
+    /**
+     * Run a number of generations, then pause and call the finished callback
+     *
+     * @param steps number of generations (-1 = until paused)
+     */
+    public synchronized void run(long steps) {
+        this.remaining = steps;
+        this.running = true;
+        notifyAll();
+    }
+
+    /**
+     * Pause after the current generation and publish it (with look-ahead the displayed generation)
+     */
+    public void pause() {
+        synchronized (this) {
+            this.running = false;
+        }
+        synchronized (lock) {
+            discardLookAhead();
+        }
+        publish();
+    }
+
+    /**
+     * Check if generations are being developed
+     *
+     * @return true if running
+     */
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Set target speed
+     *
+     * @param generationsPerSecond target generations per second, Double.POSITIVE_INFINITY = back to back
+     */
+    public void setRate(double generationsPerSecond) {
+        this.rate = generationsPerSecond;
+    }
+
+    /**
+     * Develop generations immediately on the calling thread (observers are notified on the calling thread)
+     *
+     * @param steps number of generations
+     */
+    public void step(int steps) {
+        synchronized (lock) {
+            discardLookAhead();
+            developGenerations(steps);
+        }
+    }
+
+    /**
+     * Change the world while no generation is being developed (the look-ahead is thrown away first,
+     * so the change applies to the displayed generation)
+     *
+     * @param change change to apply
+     */
+    public void edit(Runnable change) {
+        synchronized (lock) {
+            discardLookAhead();
+            change.run();
+        }
+    }
+
+    /**
+     * Use the world while no generation is being developed, keeping the look-ahead
+     * (while playing the world may be ahead of the display)
+     *
+     * @param access code reading the world
+     */
+    public void read(Runnable access) {
+        synchronized (lock) {
+            access.run();
+        }
+    }
+
+    /**
+     * Replace world (e.g. other model or opened file)
+     *
+     * @param world instance of Buildable
+     */
+    public void setWorld(Buildable world) {
+        synchronized (lock) {
+            discardLookAhead();
+            this.world = world;
+        }
+    }
+
+    /**
+     * Develop generations ahead of the display while running
+     *
+     * @param frames  maximum number of generations ahead (0 = off), fewer if their boards would need too much memory
+     * @param allowed checked before every generation, false = develop at the target rate only (e.g. every generation
+     *                is recorded, so generations must not be thrown away)
+     */
+    public void setLookAhead(int frames, BooleanSupplier allowed) {
+        this.lookAheadAllowed = allowed;
+        this.lookAheadFrames = frames;
+    }
+
+    /**
+     * Get current generation number
+     *
+     * @return generations developed since the last reset
+     */
+    public long getGeneration() {
+        synchronized (lock) {
+            return generation;
+        }
+    }
+
+    /**
+     * Set generation number (after reset or open)
+     *
+     * @param generation generation number
+     */
+    public void setGeneration(long generation) {
+        synchronized (lock) {
+            discardLookAhead();
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * Set callback invoked on the simulation thread when a run of n generations is done
+     *
+     * @param onFinished callback
+     */
+    public void setOnFinished(Runnable onFinished) {
+        this.onFinished = onFinished;
+    }
+
+    /**
+     * Set callback invoked after every generation while the world is locked (e.g. recording)
+     *
+     * @param stepListener callback receiving the world
+     * @param needed       checked before developing, false = the callback has nothing to do, engines may develop
+     *                     several generations per pass (fast forward, max speed)
+     */
+    public void setStepListener(Consumer<Buildable> stepListener, BooleanSupplier needed) {
+        this.stepListener = stepListener;
+        this.stepListenerNeeded = needed;
+    }
+
+    /**
+     * Set board region copied for display (the rest of the board is only published as tile summary)
+     *
+     * @param x      left column
+     * @param y      top row
+     * @param width  number of columns, 0 = no cells needed
+     * @param height number of rows
+     */
+    public void setRegion(int x, int y, int width, int height) {
+        this.region = new int[]{x, y, width, height};
+    }
+
+    /**
+     * Take newest published generation and ask for the next one (with look-ahead the newest generation due at the
+     * target rate)
+     *
+     * @return newest generation, null if nothing new was published since the last call
+     */
+    public Frame takeFrame() {
+        Frame frame = latest.getAndSet(null);
+        frameRequested.set(true);
+        Frame due = takeDue(System.nanoTime());
+        return due != null ? due : frame;
+    }
+
+    /**
+     * Take look-ahead frames due at the target rate
+     *
+     * @param now current time (System.nanoTime)
+     * @return newest due frame with the displayed region, null if none is due
+     */
+    private Frame takeDue(long now) {
+        Frame due = null;
+        boolean finished = false;
+        synchronized (ahead) {
+            if (ahead.isEmpty()) {
+                return null;
+            }
+            double target = rate;
+            if (target == Double.POSITIVE_INFINITY) {
+                // Max speed, show the newest one
+                while (!ahead.isEmpty()) {
+                    due = ahead.poll();
+                }
+            } else {
+                if (now - nextDue > 100_000_000L) {
+                    // Look-ahead ran empty or just started, don't try to catch up
+                    this.nextDue = now;
+                }
+                while (!ahead.isEmpty() && now >= nextDue) {
+                    due = ahead.poll();
+                    this.nextDue += (long) (1e9 / target);
+                }
+            }
+            if (due == null) {
+                return null;
+            }
+            this.shown = due;
+            if (due.generation == finishGeneration) {
+                this.finishGeneration = -1;
+                finished = true;
+            }
+            ahead.notifyAll();
+        }
+        Runnable callback = onFinished;
+        if (finished && callback != null) {
+            callback.run();
+        }
+        // Region is copied when shown, the viewport may have moved since the generation was developed
+        long start = System.nanoTime();
+        int[] r = region;
+        Snapshot snapshot = copyRegion(due.board, r[0], r[1], r[2], r[3]);
+        metrics.time(Metrics.COPY, System.nanoTime() - start);
+        return new Frame(snapshot, due.tiles, due.generation, due.board);
+    }
+
+    /**
+     * Get the displayed generation while the world is developed ahead of it (e.g. to repaint after the viewport
+     * moved without showing generations that are not due yet)
+     *
+     * @param x      left column
+     * @param y      top row
+     * @param width  number of columns, 0 = no cells needed
+     * @param height number of rows
+     * @return displayed frame with the region, null if there is no look-ahead (the world is displayed)
+     */
+    public Frame getDisplayed(int x, int y, int width, int height) {
+        Frame displayed;
+        synchronized (ahead) {
+            displayed = shown;
+        }
+        if (displayed == null) {
+            return null;
+        }
+        return new Frame(copyRegion(displayed.board, x, y, width, height), displayed.tiles, displayed.generation, displayed.board);
+    }
+
+    /**
+     * Copy a region of a whole board, clipped to the board
+     *
+     * @param board  whole board
+     * @param x      left column
+     * @param y      top row
+     * @param width  number of columns, 0 = no cells needed
+     * @param height number of rows
+     * @return region, null if no cells are needed
+     */
+    private static Snapshot copyRegion(Snapshot board, int x, int y, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        width = Math.max(0, Math.min(width, board.getXLength() - x));
+        height = Math.max(0, Math.min(height, board.getYLength() - y));
+        return Bits.region(board.getWords(), board.getXLength(), board.getYLength(), x, y, width, height);
+    }
+
+    /**
+     * Check if generations are developed ahead of the display (not at max speed, the display shows only the newest
+     * generation there and copying every board would slow it down)
+     *
+     * @return true if look-ahead is on and allowed
+     */
+    private boolean isLookingAhead() {
+        return lookAheadFrames > 0 && rate != Double.POSITIVE_INFINITY && lookAheadAllowed.getAsBoolean();
+    }
+
+    /**
+     * Number of look-ahead frames, limited by the memory of their boards
+     *
+     * @return maximum number of frames ahead (at least 1)
+     */
+    private int lookAheadCapacity() {
+        long frameBytes = (long) Snapshot.wordCount(world.getXLength(), world.getYLength()) * 8
+                + (long) world.getDensityTiles().getTilesX() * world.getDensityTiles().getTilesY() * 4;
+        return (int) Math.max(1, Math.min(lookAheadFrames, LOOK_AHEAD_BYTES / Math.max(1, frameBytes)));
+    }
+
+    /**
+     * Throw the look-ahead away and set the world back to the displayed generation (lock must be held)
+     */
+    private void discardLookAhead() {
+        synchronized (ahead) {
+            try {
+                if (shown != null) {
+                    this.generation = shown.generation;
+                    restore(shown.board);
+                }
+            } finally {
+                // Cleared even if restoring fails, otherwise every later edit would fail again
+                this.shown = null;
+                ahead.clear();
+                this.finishGeneration = -1;
+                ahead.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Set the world to a board of the same size, only differing cells are changed (lock must be held)
+     *
+     * @param board board to go back to
+     */
+    private void restore(Snapshot board) {
+        // Padded to the full board, snapshots may leave out trailing zero words (BitSetModel)
+        int words = Snapshot.wordCount(board.getXLength(), board.getYLength());
+        long[] current = Arrays.copyOf(world.snapshot().getWords(), words);
+        long[] target = Arrays.copyOf(board.getWords(), words);
+        int xLength = board.getXLength();
+        CellBatch batch = new CellBatch();
+        for (int w = 0; w < target.length; w++) {
+            long changed = current[w] ^ target[w];
+            while (changed != 0) {
+                int bit = Long.numberOfTrailingZeros(changed);
+                int i = (w << 6) + bit;
+                batch.set(i % xLength, i / xLength, (target[w] >>> bit & 1) != 0);
+                changed &= changed - 1;
+            }
+        }
+        if (batch.size() > 0) {
+            world.setCells(batch);
+        }
+    }
+
+    /**
+     * Develop one generation into the look-ahead, then wait while it is full
+     *
+     * @return false if interrupted
+     */
+    private boolean developAhead() {
+        int capacity;
+        synchronized (lock) {
+            synchronized (ahead) {
+                if (shown == null) {
+                    // Displayed generation, the world goes back to it if the look-ahead is thrown away
+                    this.shown = new Frame(null, world.getDensityTiles().copy(), generation, world.snapshot());
+                }
+            }
+            developGeneration();
+            Frame frame = new Frame(null, world.getDensityTiles().copy(), generation, world.snapshot());
+            boolean finished = false;
+            synchronized (this) {
+                if (remaining > 0 && --remaining == 0) {
+                    // The run is finished when the display reaches its last generation
+                    this.running = false;
+                    finished = true;
+                }
+            }
+            capacity = lookAheadCapacity();
+            synchronized (ahead) {
+                ahead.add(frame);
+                if (finished) {
+                    this.finishGeneration = frame.generation;
+                }
+            }
+        }
+        // Wait without lock, edits and pause throw the look-ahead away meanwhile
+        synchronized (ahead) {
+            while (ahead.size() >= capacity && isRunning()) {
+                try {
+                    ahead.wait();
+                } catch (InterruptedException e) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Develop generations, several per pass if the step listener doesn't need every one of them (lock must be held)
+     *
+     * @param generations number of generations
+     */
+    private void developGenerations(int generations) {
+        if (generations > 1 && (stepListener == null || !stepListenerNeeded.getAsBoolean())) {
+            metrics.developGenerations(world, generations);
+            generation += generations;
+        } else {
+            for (int i = 0; i < generations; i++) {
+                developGeneration();
+            }
+        }
+    }
+
+    /**
+     * Develop one generation (lock must be held)
+     */
+    private void developGeneration() {
+        metrics.developGeneration(world);
+        generation++;
+        Consumer<Buildable> listener = stepListener;
+        if (listener != null) {
+            long start = System.nanoTime();
+            listener.accept(world);
+            metrics.time(Metrics.RECORD, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Copy displayed region of the current generation
+     */
+    private void publish() {
+        int[] r = region;
+        synchronized (lock) {
+            long start = System.nanoTime();
+            Snapshot snapshot = null;
+            if (r[2] > 0 && r[3] > 0) {
+                int width = Math.min(r[2], world.getXLength() - r[0]);
+                int height = Math.min(r[3], world.getYLength() - r[1]);
+                snapshot = world.snapshot(r[0], r[1], Math.max(0, width), Math.max(0, height));
+            }
+            // Copied once per displayed frame, models may update their tiles in place
+            latest.set(new Frame(snapshot, world.getDensityTiles().copy(), generation, null));
+            metrics.time(Metrics.COPY, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Simulation thread: wait while paused, otherwise develop generations at the target rate
+     */
+    private void loop() {
+        long next = System.nanoTime();
+        while (true) {
+            synchronized (this) {
+                while (!running) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    next = System.nanoTime();
+                }
+            }
+            if (isLookingAhead()) {
+                if (!developAhead()) {
+                    return;
+                }
+                // Paced by the display taking frames
+                continue;
+            }
+            int generations = 1;
+            if (rate == Double.POSITIVE_INFINITY) {
+                synchronized (this) {
+                    generations = (int) (remaining > 0 ? Math.min(remaining, MAX_SPEED_GENERATIONS) : MAX_SPEED_GENERATIONS);
+                }
+            }
+            synchronized (lock) {
+                discardLookAhead();
+                developGenerations(generations);
+            }
+            boolean finished = false;
+            boolean stopped;
+            synchronized (this) {
+                if (remaining > 0) {
+                    this.remaining = Math.max(0, remaining - generations);
+                    if (remaining == 0) {
+                        this.running = false;
+                        finished = true;
+                    }
+                }
+                stopped = !running;
+            }
+            // Skip generations nobody is waiting for, but always publish the one we stop at
+            if (stopped || frameRequested.compareAndSet(true, false)) {
+                publish();
+            }
+            Runnable callback = onFinished;
+            if (finished && callback != null) {
+                callback.run();
+            }
+            double target = rate;
+            if (target == Double.POSITIVE_INFINITY) {
+                // Max speed, no pacing
+                next = System.nanoTime();
+                continue;
+            }
+            next += (long) (1e9 / target);
+            long delay = next - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            } else if (delay < -100_000_000L) {
+                // Too slow for the target rate, don't try to catch up
+                next = System.nanoTime();
+            }
+        }
+    }
+}
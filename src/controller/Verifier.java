@@ -0,0 +1,470 @@
+package controller;
+
+import model.Buildable;
+import model.InputOutput;
+import model.Snapshot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Differential verification of all engines against a plain reference implementation, with throughput gate
+ * <p>
+ * Random boards (sizes down to 1x1, several densities, torus on/off) and the pattern files of a directory are
+ * developed generation by generation by every engine and compared cell by cell; the first divergence per engine is
+ * reported. Afterwards the throughput of every engine on a fixed board is measured and compared with a baseline file
+ * (million cell updates per second per engine, machine specific). Missing baselines are recorded.
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public class Verifier {
+    private static final int[][] EDGE_SIZES = {{1, 1}, {1, 7}, {7, 1}, {2, 2}, {3, 3}, {2, 9}, {63, 5}, {64, 4}, {65, 3}, {130, 2}};
+    private static final double[] DENSITIES = {0.05, 0.3, 0.5, 0.9};
+    private static final int RANDOM_BOARDS = 60;
+    private static final int BENCH_SIZE = 256;
+    private static final long BENCH_WINDOW_NANOS = 300_000_000L;
+    private static final int BENCH_ROUNDS = 5;
+    private static final double DEFAULT_TOLERANCE = 0.2;
+    private static final int LOOK_AHEAD = 3;
+    private static final double LOOK_AHEAD_RATE = 5;
+    private static final long LOOK_AHEAD_TIMEOUT_NANOS = 5_000_000_000L;
+
+    private final int generations;
+    private final long seed;
+    private final HashMap<String, Integer> divergences = new HashMap<>();
+    private int boards;
+
+    /**
+     * Constructor
+     *
+     * @param generations generations per board
+     * @param seed        seed for random boards
+     */
+    Verifier(int generations, long seed) {
+        this.generations = generations;
+        this.seed = seed;
+    }
+
+    /**
+     * Process verify arguments: --verify patternDir baseline.properties [--generations=int] [--seed=long] [--update-baseline]
+     *
+     * @param args program arguments
+     * @return true if all engines agree with the reference and none is slower than its baseline
+     * @throws IOException pattern or baseline file can't be read or written
+     */
+    public static boolean run(String[] args) throws IOException {
+        HashMap<String, String> options = new HashMap<>();
+        args = CLI.parseOptions(args, options);
+        if (args.length < 2) {
+            System.out.println("--verify ARG1: directory with pattern files (.txt)");
+            System.out.println("         ARG2: throughput baseline (.properties, created if missing)");
+            System.out.println("         --generations=int: generations per board (default = 30)");
+            System.out.println("         --seed=long: seed for random boards (default = 1)");
+            System.out.println("         --update-baseline: store measured throughput as new baseline");
+            System.out.println();
+            return false;
+        }
+        Verifier verifier = new Verifier(Integer.parseInt(options.getOrDefault("generations", "30")), Long.parseLong(options.getOrDefault("seed", "1")));
+        boolean correct = verifier.verifyRandom() & verifier.verifyPatterns(Paths.get(args[0])) & verifier.verifyLookAhead();
+        System.out.println(verifier.boards + " boards, " + verifier.generations + " generations each: "
+                + (correct ? "all engines agree" : "DIVERGENCE " + verifier.divergences));
+        System.out.println();
+        boolean fast = verifier.verifyThroughput(Paths.get(args[1]), options.containsKey("update-baseline"));
+        return correct && fast;
+    }
+
+    /**
+     * Verify random boards, edge sizes first
+     *
+     * @return true if no engine diverged
+     */
+    boolean verifyRandom() {
+        Random random = new Random(seed);
+        boolean ok = true;
+        for (int b = 0; b < EDGE_SIZES.length + RANDOM_BOARDS; b++) {
+            int xLength = b < EDGE_SIZES.length ? EDGE_SIZES[b][0] : 1 + random.nextInt(150);
+            int yLength = b < EDGE_SIZES.length ? EDGE_SIZES[b][1] : 1 + random.nextInt(150);
+            double density = DENSITIES[b % DENSITIES.length];
+            Snapshot board = Snapshot.random(xLength, yLength, density, random);
+            String name = "random " + xLength + "x" + yLength + " density " + density;
+            ok &= verify(name, board, false);
+            ok &= verify(name, board, true);
+        }
+        return ok;
+    }
+
+    /**
+     * Verify all pattern files (.txt) of a directory
+     *
+     * @param directory directory with pattern files
+     * @return true if no engine diverged
+     * @throws IOException error while reading a pattern file
+     */
+    boolean verifyPatterns(Path directory) throws IOException {
+        boolean ok = true;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.txt")) {
+            for (Path file : files) {
+                Snapshot board = InputOutput.readSnapshot(file.toString(), (done, total) -> true);
+                ok &= verify(file.getFileName().toString(), board, false);
+                ok &= verify(file.getFileName().toString(), board, true);
+            }
+        }
+        return ok;
+    }
+
+    /**
+     * Develop a board with the reference and all engines and compare every generation, then develop all generations
+     * in one call and compare the result
+     *
+     * @param name  name of the board for the report
+     * @param board initial board
+     * @param torus surface mode
+     * @return true if no engine diverged
+     */
+    boolean verify(String name, Snapshot board, boolean torus) {
+        boards++;
+        Buildable[] worlds = new Buildable[Engines.NAMES.length];
+        boolean[] diverged = new boolean[Engines.NAMES.length];
+        for (int e = 0; e < Engines.NAMES.length; e++) {
+            worlds[e] = Engines.create(Engines.NAMES[e], board);
+            worlds[e].setTorus(torus);
+        }
+        Snapshot expected = board;
+        boolean ok = true;
+        for (int generation = 1; generation <= generations; generation++) {
+            Snapshot previous = expected;
+            expected = step(previous, torus);
+            int births = countChanges(previous, expected, true);
+            int deaths = countChanges(previous, expected, false);
+            for (int e = 0; e < Engines.NAMES.length; e++) {
+                if (diverged[e]) {
+                    continue;
+                }
+                String difference;
+                try {
+                    worlds[e].developGeneration();
+                    difference = compare(expected, worlds[e].snapshot());
+                } catch (RuntimeException ex) {
+                    difference = ex.toString();
+                }
+                if (difference == null && (worlds[e].getBirths() != births || worlds[e].getDeaths() != deaths)) {
+                    difference = "births/deaths " + worlds[e].getBirths() + "/" + worlds[e].getDeaths() + ", expected " + births + "/" + deaths;
+                }
+                if (difference != null) {
+                    diverged[e] = true;
+                    ok = false;
+                    int count = divergences.getOrDefault(Engines.NAMES[e], 0);
+                    divergences.put(Engines.NAMES[e], count + 1);
+                    // Only the first divergence of an engine is reported in detail
+                    if (count == 0) {
+                        System.out.println(Engines.NAMES[e] + " diverges on " + name + (torus ? " (torus)" : " (hard limit)")
+                                + " in generation " + generation + ": " + difference);
+                    }
+                }
+            }
+        }
+        // Same generations in one call, engines may develop them in blocks
+        for (int e = 0; e < Engines.NAMES.length; e++) {
+            if (diverged[e]) {
+                continue;
+            }
+            String difference;
+            try {
+                Buildable world = Engines.create(Engines.NAMES[e], board);
+                world.setTorus(torus);
+                world.developGenerations(generations);
+                difference = compare(expected, world.snapshot());
+            } catch (RuntimeException ex) {
+                difference = ex.toString();
+            }
+            if (difference != null) {
+                ok = false;
+                int count = divergences.getOrDefault(Engines.NAMES[e], 0);
+                divergences.put(Engines.NAMES[e], count + 1);
+                if (count == 0) {
+                    System.out.println(Engines.NAMES[e] + " diverges on " + name + (torus ? " (torus)" : " (hard limit)")
+                            + " developing " + generations + " generations in one call: " + difference);
+                }
+            }
+        }
+        return ok;
+    }
+
+    /**
+     * Verify that every engine goes back to the displayed generation when the look-ahead of the simulation is thrown
+     * away by an edit (boards ending with live cells or with cells moving into trailing words, random boards)
+     *
+     * @return true if no engine diverged
+     */
+    boolean verifyLookAhead() {
+        Random random = new Random(seed);
+        Snapshot corner = new Snapshot(8, 16, new long[Snapshot.wordCount(8, 16)]);
+        corner.getWords()[1] = 1L << 63;
+        Snapshot blinker = new Snapshot(8, 16, new long[Snapshot.wordCount(8, 16)]);
+        blinker.getWords()[0] = 7L << 58;
+        Snapshot[] boards = {corner, blinker, Snapshot.random(65, 3, 0.3, random), Snapshot.random(100, 70, 0.3, random)};
+        boolean ok = true;
+        for (String engine : Engines.NAMES) {
+            Simulation simulation = new Simulation(Engines.create(engine, boards[0]));
+            simulation.setLookAhead(LOOK_AHEAD + 1, () -> true);
+            // Frames are due far enough apart to take exactly one, the rest stays ahead of the display
+            simulation.setRate(LOOK_AHEAD_RATE);
+            for (Snapshot board : boards) {
+                this.boards++;
+                String difference;
+                try {
+                    difference = verifyLookAhead(simulation, Engines.create(engine, board), board);
+                } catch (RuntimeException | InterruptedException ex) {
+                    difference = ex.toString();
+                }
+                if (difference != null) {
+                    ok = false;
+                    int count = divergences.getOrDefault(engine, 0);
+                    divergences.put(engine, count + 1);
+                    if (count == 0) {
+                        System.out.println(engine + " diverges on " + board.getXLength() + "x" + board.getYLength()
+                                + " after throwing the look-ahead away: " + difference);
+                    }
+                }
+            }
+            simulation.pause();
+        }
+        return ok;
+    }
+
+    /**
+     * Develop generations ahead, edit without and with a displayed frame, compare with the reference
+     *
+     * @param simulation simulation with look-ahead
+     * @param world      world with the initial board
+     * @param board      initial board
+     * @return description of the first difference, null if equal
+     * @throws InterruptedException interrupted while waiting for the look-ahead
+     */
+    private static String verifyLookAhead(Simulation simulation, Buildable world, Snapshot board) throws InterruptedException {
+        simulation.setWorld(world);
+        simulation.setGeneration(0);
+        developAhead(simulation);
+        // Nothing displayed yet, the world goes back to the initial board
+        Snapshot[] actual = new Snapshot[1];
+        simulation.edit(() -> actual[0] = world.snapshot());
+        String difference = compare(board, actual[0]);
+        if (difference != null || simulation.getGeneration() != 0) {
+            return "before the first frame: " + (difference != null ? difference : "generation " + simulation.getGeneration());
+        }
+        developAhead(simulation);
+        Simulation.Frame frame = takeFrame(simulation);
+        if (frame == null || frame.generation != 1) {
+            return "first frame " + (frame == null ? "missing" : "is generation " + frame.generation);
+        }
+        // Edit applies to the displayed generation
+        simulation.edit(() -> {
+            world.toggleCell(0, 0);
+            actual[0] = world.snapshot();
+        });
+        Buildable expected = Engines.create(Engines.NAMES[0], step(board, world.isTorus()));
+        expected.toggleCell(0, 0);
+        difference = compare(expected.snapshot(), actual[0]);
+        if (difference != null || simulation.getGeneration() != 1) {
+            return "after the first frame: " + (difference != null ? difference : "generation " + simulation.getGeneration());
+        }
+        return null;
+    }
+
+    /**
+     * Wait for the next look-ahead frame due
+     *
+     * @param simulation simulation with look-ahead
+     * @return frame, null if none was due in time
+     * @throws InterruptedException interrupted while waiting
+     */
+    private static Simulation.Frame takeFrame(Simulation simulation) throws InterruptedException {
+        long start = System.nanoTime();
+        Simulation.Frame frame;
+        while ((frame = simulation.takeFrame()) == null && System.nanoTime() - start < LOOK_AHEAD_TIMEOUT_NANOS) {
+            Thread.sleep(1);
+        }
+        return frame;
+    }
+
+    /**
+     * Run the simulation until it is a number of generations ahead of the display
+     *
+     * @param simulation simulation with look-ahead
+     * @throws InterruptedException interrupted while waiting
+     */
+    private static void developAhead(Simulation simulation) throws InterruptedException {
+        long target = simulation.getGeneration() + LOOK_AHEAD;
+        simulation.run(LOOK_AHEAD);
+        long start = System.nanoTime();
+        while (simulation.getGeneration() < target) {
+            if (System.nanoTime() - start > LOOK_AHEAD_TIMEOUT_NANOS) {
+                throw new IllegalStateException("look-ahead stopped at generation " + simulation.getGeneration());
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Measure throughput of all engines and compare with the baseline
+     *
+     * @param baselinePath baseline file (created if missing)
+     * @param update       store all measured values as new baseline
+     * @return true if no engine is slower than its baseline (minus tolerance)
+     * @throws IOException error while reading or writing the baseline
+     */
+    boolean verifyThroughput(Path baselinePath, boolean update) throws IOException {
+        Properties baseline = new Properties();
+        if (Files.exists(baselinePath)) {
+            try (InputStream in = Files.newInputStream(baselinePath)) {
+                baseline.load(in);
+            }
+        }
+        double tolerance = Double.parseDouble(baseline.getProperty("tolerance", String.valueOf(DEFAULT_TOLERANCE)));
+        boolean changed = false;
+        boolean ok = true;
+        Snapshot board = Snapshot.random(BENCH_SIZE, BENCH_SIZE, 0.3, new Random(seed));
+        System.out.println(String.format(Locale.ROOT, "%-14s %12s %12s  %s", "engine", "Mcells/s", "baseline", "status"));
+        for (String engine : Engines.NAMES) {
+            double measured = throughput(engine, board);
+            String stored = baseline.getProperty(engine);
+            String status;
+            if (stored == null || update) {
+                baseline.setProperty(engine, String.format(Locale.ROOT, "%.2f", measured));
+                changed = true;
+                status = "recorded";
+            } else if (measured < Double.parseDouble(stored) * (1 - tolerance)) {
+                ok = false;
+                status = String.format(Locale.ROOT, "SLOWER by %.0f%%", 100 * (1 - measured / Double.parseDouble(stored)));
+            } else {
+                status = "ok";
+            }
+            System.out.println(String.format(Locale.ROOT, "%-14s %12.2f %12s  %s", engine, measured, stored == null ? "-" : stored, status));
+        }
+        if (changed) {
+            baseline.setProperty("tolerance", String.valueOf(tolerance));
+            try (OutputStream out = Files.newOutputStream(baselinePath)) {
+                baseline.store(out, "Million cell updates per second on a " + BENCH_SIZE + "x" + BENCH_SIZE + " torus, density 0.3");
+            }
+        }
+        return ok;
+    }
+
+    /**
+     * Measure throughput of one engine (best of several rounds after a warm up round)
+     *
+     * @param engine engine name
+     * @param board  initial board
+     * @return million cell updates per second
+     */
+    static double throughput(String engine, Snapshot board) {
+        double best = 0;
+        for (int round = 0; round <= BENCH_ROUNDS; round++) {
+            Buildable world = Engines.create(engine, board);
+            world.setTorus(true);
+            long start = System.nanoTime();
+            long elapsed;
+            int developed = 0;
+            do {
+                world.developGeneration();
+                developed++;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < BENCH_WINDOW_NANOS);
+            // Round 0 only warms up the JIT
+            if (round > 0) {
+                best = Math.max(best, (double) developed * board.getXLength() * board.getYLength() * 1000 / elapsed);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Develop a board by one generation (reference, checks every neighbor by coordinates;
+     * on a torus narrower than 3 cells a neighbor may be counted more than once, like in the engines)
+     *
+     * @param board current board
+     * @param torus surface mode
+     * @return next generation
+     */
+    static Snapshot step(Snapshot board, boolean torus) {
+        int xLength = board.getXLength();
+        int yLength = board.getYLength();
+        long[] words = new long[Snapshot.wordCount(xLength, yLength)];
+        for (int y = 0; y < yLength; y++) {
+            for (int x = 0; x < xLength; x++) {
+                int neighbors = 0;
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dx = -1; dx <= 1; dx++) {
+                        int nx = x + dx;
+                        int ny = y + dy;
+                        if (dx == 0 && dy == 0) {
+                            continue;
+                        }
+                        if (torus) {
+                            nx = (nx + xLength) % xLength;
+                            ny = (ny + yLength) % yLength;
+                        } else if (nx < 0 || ny < 0 || nx >= xLength || ny >= yLength) {
+                            continue;
+                        }
+                        if (board.isAlive(nx, ny)) {
+                            neighbors++;
+                        }
+                    }
+                }
+                if (neighbors == 3 || (neighbors == 2 && board.isAlive(x, y))) {
+                    int i = x + y * xLength;
+                    words[i >>> 6] |= 1L << i;
+                }
+            }
+        }
+        return new Snapshot(xLength, yLength, words);
+    }
+
+    /**
+     * Find first differing cell
+     *
+     * @param expected board of the reference
+     * @param actual   board of an engine
+     * @return description of the first difference, null if equal
+     */
+    static String compare(Snapshot expected, Snapshot actual) {
+        if (expected.getXLength() != actual.getXLength() || expected.getYLength() != actual.getYLength()) {
+            return "board size " + actual.getXLength() + "x" + actual.getYLength() + ", expected " + expected.getXLength() + "x" + expected.getYLength();
+        }
+        for (int y = 0; y < expected.getYLength(); y++) {
+            for (int x = 0; x < expected.getXLength(); x++) {
+                if (expected.isAlive(x, y) != actual.isAlive(x, y)) {
+                    return "cell (" + x + "," + y + ") is " + (actual.isAlive(x, y) ? "alive" : "dead") + ", expected " + (expected.isAlive(x, y) ? "alive" : "dead");
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Count cells born or died between two generations
+     *
+     * @param before previous generation
+     * @param after  next generation
+     * @param born   true = count births, false = count deaths
+     * @return number of changed cells
+     */
+    private static int countChanges(Snapshot before, Snapshot after, boolean born) {
+        long[] a = before.getWords();
+        long[] b = after.getWords();
+        int count = 0;
+        for (int w = 0; w < a.length; w++) {
+            count += Long.bitCount(born ? b[w] & ~a[w] : a[w] & ~b[w]);
+        }
+        return count;
+    }
+}
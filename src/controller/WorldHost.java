@@ -0,0 +1,662 @@
+package controller;
+
+import model.Buildable;
+import model.CellBatch;
+import model.InputOutput;
+import model.Snapshot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Many independent worlds developed on a fixed pool of worker threads
+ * <p>
+ * Steps are queued per world. A world with pending generations waits in one run queue, a worker develops it for at
+ * most one time slice (in chunks sized from its measured time per generation) and puts it back at the end of the
+ * queue, so every busy world gets the same share of the workers regardless of board size or number of pending steps.
+ * <p>
+ * Every world has a memory estimate (see Engines.estimateBytes). Worlds above the per-world limit are rejected. When
+ * the resident worlds together would exceed the total limit, the least recently used worlds not in use are written
+ * to the store directory (InputOutput text format) and dropped, the same happens to worlds idle for longer than the
+ * idle timeout. Evicted worlds are read back on their next access (queued worlds when their turn comes).
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public class WorldHost {
+
+    /**
+     * One hosted world, the board is null while the world is evicted
+     */
+    static class HostedWorld {
+        final long id;
+        final String engine;
+        final int xLength;
+        final int yLength;
+        final boolean torus;
+        final long bytes;
+        final Path file;
+        // Guards all fields below except the volatile ones
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition developed = lock.newCondition();
+        volatile Buildable world;
+        long generation;
+        long pending;
+        boolean queued;
+        boolean removed;
+        double nanosPerGeneration;
+        String error;
+        volatile long lastAccess = System.nanoTime();
+        volatile int population;
+        // Guarded by the budget: being written to the store by the thread holding the lock
+        boolean evicting;
+
+        /**
+         * Constructor
+         *
+         * @param id      world id
+         * @param engine  engine name
+         * @param xLength width of board
+         * @param yLength height of board
+         * @param torus   surface mode
+         * @param file    file the world is evicted to
+         */
+        HostedWorld(long id, String engine, int xLength, int yLength, boolean torus, Path file) {
+            this.id = id;
+            this.engine = engine;
+            this.xLength = xLength;
+            this.yLength = yLength;
+            this.torus = torus;
+            this.bytes = Engines.estimateBytes(engine, xLength, yLength);
+            this.file = file;
+        }
+    }
+
+    /**
+     * Copy of a board region with the generation it belongs to
+     */
+    static class Capture {
+        final Snapshot snapshot;
+        final long generation;
+
+        /**
+         * Constructor
+         *
+         * @param snapshot   copied cells
+         * @param generation generation of the copy
+         */
+        Capture(Snapshot snapshot, long generation) {
+            this.snapshot = snapshot;
+            this.generation = generation;
+        }
+    }
+
+    private final Map<Long, HostedWorld> worlds = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final LinkedBlockingQueue<HostedWorld> ready = new LinkedBlockingQueue<>();
+    private final Thread[] workers;
+    private final ScheduledExecutorService janitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "world-janitor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final long sliceNanos;
+    private final long maxWorldBytes;
+    private final long maxResidentBytes;
+    private final long idleNanos;
+    private final Path store;
+    // Guards residentBytes and evictingBytes when reserving memory, never held while a world is written
+    private final Object budget = new Object();
+    private long residentBytes;
+    private long evictingBytes;
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong slices = new AtomicLong();
+    private final AtomicLong generations = new AtomicLong();
+
+    /**
+     * Constructor, starts the worker threads (daemon threads, the caller keeps the process alive)
+     *
+     * @param threads          number of worker threads
+     * @param sliceMillis      time slice per world and turn
+     * @param maxWorldBytes    memory limit of one world
+     * @param maxResidentBytes memory limit of all worlds in memory
+     * @param idleSeconds      idle worlds are evicted after this time, 0 = only when memory is needed
+     * @param store            directory for evicted worlds
+     */
+    public WorldHost(int threads, long sliceMillis, long maxWorldBytes, long maxResidentBytes, long idleSeconds, Path store) {
+        this.sliceNanos = TimeUnit.MILLISECONDS.toNanos(sliceMillis);
+        this.maxWorldBytes = maxWorldBytes;
+        this.maxResidentBytes = maxResidentBytes;
+        this.idleNanos = TimeUnit.SECONDS.toNanos(idleSeconds);
+        this.store = store;
+        this.workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(this::work, "world-worker-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        if (idleSeconds > 0) {
+            janitor.scheduleWithFixedDelay(this::evictIdle, 1, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Create world with all cells dead
+     *
+     * @param engine  engine name (one of Engines.NAMES)
+     * @param xLength width of board
+     * @param yLength height of board
+     * @param torus   surface mode
+     * @return id of the new world
+     * @throws IOException error while evicting other worlds
+     */
+    public long create(String engine, int xLength, int yLength, boolean torus) throws IOException {
+        if (xLength <= 0 || yLength <= 0) {
+            throw new IllegalArgumentException("Board size must be positive: " + xLength + "x" + yLength);
+        }
+        if (!Arrays.asList(Engines.NAMES).contains(engine)) {
+            throw new IllegalArgumentException("Unknown engine: " + engine + " (one of " + String.join(", ", Engines.NAMES) + ")");
+        }
+        long id = nextId.getAndIncrement();
+        HostedWorld hosted = new HostedWorld(id, engine, xLength, yLength, torus, store.resolve("world-" + id + ".txt"));
+        if (hosted.bytes > maxWorldBytes) {
+            throw new IllegalArgumentException("World needs about " + hosted.bytes / 1024 + " KB, limit per world is " + maxWorldBytes / 1024 + " KB");
+        }
+        reserve(hosted);
+        try {
+            Buildable world = Engines.create(engine, new Snapshot(xLength, yLength, new long[Snapshot.wordCount(xLength, yLength)]));
+            world.setTorus(torus);
+            hosted.world = world;
+        } catch (RuntimeException e) {
+            release(hosted.bytes);
+            throw e;
+        }
+        worlds.put(id, hosted);
+        return id;
+    }
+
+    /**
+     * Place a pattern into a world, cells of the pattern rectangle are overwritten (cells outside the board are skipped)
+     *
+     * @param id      world id
+     * @param pattern pattern
+     * @param x       left column of the pattern in the world
+     * @param y       top row of the pattern in the world
+     * @throws IOException error while reading the evicted world
+     */
+    public void place(long id, Snapshot pattern, int x, int y) throws IOException {
+        HostedWorld hosted = get(id);
+        hosted.lock.lock();
+        try {
+            ensureResident(hosted);
+            CellBatch batch = new CellBatch();
+            for (int py = 0; py < pattern.getYLength(); py++) {
+                for (int px = 0; px < pattern.getXLength(); px++) {
+                    batch.set(x + px, y + py, pattern.isAlive(px, py));
+                }
+            }
+            hosted.world.setCells(batch);
+            hosted.population = hosted.world.getDensityTiles().getPopulation();
+        } finally {
+            hosted.lock.unlock();
+        }
+    }
+
+    /**
+     * Queue generations, they are developed in the background
+     *
+     * @param id          world id
+     * @param generations number of generations
+     * @return generation the world will have reached after them
+     */
+    public long step(long id, long generations) {
+        if (generations < 0) {
+            throw new IllegalArgumentException("Negative number of generations: " + generations);
+        }
+        HostedWorld hosted = get(id);
+        hosted.lock.lock();
+        try {
+            hosted.lastAccess = System.nanoTime();
+            hosted.error = null;
+            hosted.pending += generations;
+            if (hosted.pending > 0 && !hosted.queued) {
+                hosted.queued = true;
+                ready.add(hosted);
+            }
+            return hosted.generation + hosted.pending;
+        } finally {
+            hosted.lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until a world has reached a generation
+     *
+     * @param id            world id
+     * @param generation    generation to wait for
+     * @param timeoutMillis maximum waiting time
+     * @return true if the generation was reached
+     * @throws InterruptedException interrupted while waiting
+     */
+    public boolean await(long id, long generation, long timeoutMillis) throws InterruptedException {
+        HostedWorld hosted = get(id);
+        long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        hosted.lock.lock();
+        try {
+            while (hosted.generation < generation && hosted.pending > 0 && !hosted.removed) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = hosted.developed.awaitNanos(nanos);
+            }
+            return hosted.generation >= generation;
+        } finally {
+            hosted.lock.unlock();
+        }
+    }
+
+    /**
+     * Get state of a world (does not load an evicted world)
+     *
+     * @param id world id
+     * @return name and value per property, in display order
+     */
+    public Map<String, Object> status(long id) {
+        HostedWorld hosted = get(id);
+        Map<String, Object> status = new LinkedHashMap<>();
+        hosted.lock.lock();
+        try {
+            status.put("id", hosted.id);
+            status.put("engine", hosted.engine);
+            status.put("width", hosted.xLength);
+            status.put("height", hosted.yLength);
+            status.put("torus", hosted.torus);
+            status.put("generation", hosted.generation);
+            status.put("pending", hosted.pending);
+            status.put("population", hosted.population);
+            status.put("resident", hosted.world != null);
+            status.put("bytes", hosted.bytes);
+            if (hosted.error != null) {
+                status.put("error", hosted.error);
+            }
+        } finally {
+            hosted.lock.unlock();
+        }
+        return status;
+    }
+
+    /**
+     * Copy a region of a world at its current generation
+     *
+     * @param id     world id
+     * @param x      left column of region
+     * @param y      top row of region
+     * @param width  width of region
+     * @param height height of region
+     * @return copied region (cells outside of the board are dead)
+     * @throws IOException error while reading the evicted world
+     */
+    public Capture capture(long id, int x, int y, int width, int height) throws IOException {
+        HostedWorld hosted = get(id);
+        hosted.lock.lock();
+        try {
+            ensureResident(hosted);
+            return new Capture(hosted.world.snapshot(x, y, width, height), hosted.generation);
+        } finally {
+            hosted.lock.unlock();
+        }
+    }
+
+    /**
+     * Copy a whole world at its current generation
+     *
+     * @param id world id
+     * @return copied board
+     * @throws IOException error while reading the evicted world
+     */
+    public Capture capture(long id) throws IOException {
+        HostedWorld hosted = get(id);
+        hosted.lock.lock();
+        try {
+            ensureResident(hosted);
+            return new Capture(hosted.world.snapshot(), hosted.generation);
+        } finally {
+            hosted.lock.unlock();
+        }
+    }
+
+    /**
+     * Remove a world (pending generations are dropped)
+     *
+     * @param id world id
+     * @throws IOException error while deleting the evicted world
+     */
+    public void remove(long id) throws IOException {
+        HostedWorld hosted = get(id);
+        hosted.lock.lock();
+        try {
+            hosted.removed = true;
+            hosted.pending = 0;
+            if (hosted.world != null) {
+                hosted.world = null;
+                release(hosted.bytes);
+            }
+            worlds.remove(id);
+            hosted.developed.signalAll();
+        } finally {
+            hosted.lock.unlock();
+        }
+        Files.deleteIfExists(hosted.file);
+    }
+
+    /**
+     * Get counters of the host
+     *
+     * @return name and value per counter, in display order
+     */
+    public Map<String, Object> stats() {
+        int resident = 0;
+        for (HostedWorld hosted : worlds.values()) {
+            if (hosted.world != null) {
+                resident++;
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("worlds", worlds.size());
+        stats.put("resident", resident);
+        synchronized (budget) {
+            stats.put("resident_bytes", residentBytes);
+        }
+        stats.put("max_resident_bytes", maxResidentBytes);
+        stats.put("max_world_bytes", maxWorldBytes);
+        stats.put("queued", ready.size());
+        stats.put("workers", workers.length);
+        stats.put("slices", slices.get());
+        stats.put("generations", generations.get());
+        stats.put("evictions", evictions.get());
+        stats.put("loads", loads.get());
+        return stats;
+    }
+
+    /**
+     * Stop worker threads and idle eviction (worlds in memory are not saved)
+     */
+    public void shutdown() {
+        janitor.shutdownNow();
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * Get world
+     *
+     * @param id world id
+     * @return hosted world
+     */
+    private HostedWorld get(long id) {
+        HostedWorld hosted = worlds.get(id);
+        if (hosted == null) {
+            throw new NoSuchElementException("No world " + id);
+        }
+        return hosted;
+    }
+
+    /**
+     * Worker thread: develop queued worlds one time slice at a time
+     */
+    private void work() {
+        while (!Thread.currentThread().isInterrupted()) {
+            HostedWorld hosted;
+            try {
+                hosted = ready.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            runSlice(hosted);
+        }
+    }
+
+    /**
+     * Develop a world for one time slice and queue it again if generations are left
+     *
+     * @param hosted world taken from the run queue
+     */
+    private void runSlice(HostedWorld hosted) {
+        hosted.lock.lock();
+        try {
+            hosted.queued = false;
+            if (hosted.removed || hosted.pending == 0) {
+                return;
+            }
+            ensureResident(hosted);
+            long sliceEnd = System.nanoTime() + sliceNanos;
+            long now;
+            do {
+                // First chunk of a world is one generation, later chunks fill the rest of the slice
+                long chunk = 1;
+                if (hosted.nanosPerGeneration > 0) {
+                    chunk = (long) ((sliceEnd - System.nanoTime()) / hosted.nanosPerGeneration);
+                    chunk = Math.max(1, Math.min(Math.min(chunk, hosted.pending), Integer.MAX_VALUE));
+                }
+                long start = System.nanoTime();
+                hosted.world.developGenerations((int) chunk);
+                now = System.nanoTime();
+                double perGeneration = (double) (now - start) / chunk;
+                hosted.nanosPerGeneration = hosted.nanosPerGeneration == 0 ? perGeneration : 0.75 * hosted.nanosPerGeneration + 0.25 * perGeneration;
+                hosted.generation += chunk;
+                hosted.pending -= chunk;
+                generations.addAndGet(chunk);
+            } while (hosted.pending > 0 && now < sliceEnd);
+            hosted.population = hosted.world.getDensityTiles().getPopulation();
+            hosted.lastAccess = now;
+            slices.incrementAndGet();
+            if (hosted.pending > 0) {
+                hosted.queued = true;
+                ready.add(hosted);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Reported in the status of the world, the remaining generations are dropped
+            hosted.error = e.toString();
+            hosted.pending = 0;
+        } finally {
+            hosted.developed.signalAll();
+            hosted.lock.unlock();
+        }
+    }
+
+    /**
+     * Read an evicted world back into memory (caller holds the lock of the world)
+     *
+     * @param hosted world
+     * @throws IOException error while reading the world
+     */
+    private void ensureResident(HostedWorld hosted) throws IOException {
+        hosted.lastAccess = System.nanoTime();
+        if (hosted.world != null) {
+            return;
+        }
+        reserve(hosted);
+        try {
+            Snapshot snapshot = InputOutput.readSnapshot(hosted.file.toString(), (done, total) -> true);
+            Buildable world = Engines.create(hosted.engine, snapshot);
+            world.setTorus(hosted.torus);
+            hosted.world = world;
+        } catch (IOException | RuntimeException e) {
+            release(hosted.bytes);
+            throw e;
+        }
+        Files.deleteIfExists(hosted.file);
+        loads.incrementAndGet();
+    }
+
+    /**
+     * Reserve memory for a world, evicting least recently used worlds if the total limit would be exceeded
+     * (victims are picked while the budget is held and written after it is released, so other worlds can reserve
+     * and release memory in the meantime)
+     *
+     * @param hosted world to make room for
+     * @throws IOException error while writing an evicted world, or interrupted while waiting for other evictions
+     */
+    private void reserve(HostedWorld hosted) throws IOException {
+        while (true) {
+            List<HostedWorld> victims = new ArrayList<>();
+            synchronized (budget) {
+                if (residentBytes + hosted.bytes <= maxResidentBytes) {
+                    residentBytes += hosted.bytes;
+                    return;
+                }
+                List<HostedWorld> candidates = new ArrayList<>();
+                for (HostedWorld candidate : worlds.values()) {
+                    if (candidate != hosted && candidate.world != null && !candidate.evicting) {
+                        candidates.add(candidate);
+                    }
+                }
+                candidates.sort(Comparator.comparingLong(candidate -> candidate.lastAccess));
+                // Worlds other threads are writing out free their memory soon
+                long freed = evictingBytes;
+                for (HostedWorld candidate : candidates) {
+                    if (residentBytes - freed + hosted.bytes <= maxResidentBytes) {
+                        break;
+                    }
+                    if (claim(candidate)) {
+                        victims.add(candidate);
+                        freed += candidate.bytes;
+                    }
+                }
+                if (victims.isEmpty()) {
+                    if (evictingBytes == 0) {
+                        throw new IllegalStateException("Memory limit of " + maxResidentBytes / 1024 + " KB reached, all resident worlds are in use");
+                    }
+                    try {
+                        budget.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while waiting for evictions", e);
+                    }
+                    continue;
+                }
+            }
+            IOException failure = null;
+            for (HostedWorld victim : victims) {
+                try {
+                    writeOut(victim);
+                } catch (IOException e) {
+                    // The other victims are still written and unlocked
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Return memory of a world that left memory
+     *
+     * @param bytes memory estimate of the world
+     */
+    private void release(long bytes) {
+        synchronized (budget) {
+            residentBytes -= bytes;
+            budget.notifyAll();
+        }
+    }
+
+    /**
+     * Write a world to the store and drop it from memory, skipped while it is locked (e.g. being developed),
+     * a queued world is read back when its turn comes
+     *
+     * @param hosted world
+     * @return true if evicted
+     * @throws IOException error while writing the world
+     */
+    private boolean evict(HostedWorld hosted) throws IOException {
+        synchronized (budget) {
+            if (hosted.evicting || !claim(hosted)) {
+                return false;
+            }
+        }
+        writeOut(hosted);
+        return true;
+    }
+
+    /**
+     * Lock a resident world and mark it as being evicted (budget must be held)
+     *
+     * @param hosted world
+     * @return true if claimed, the caller has to write it out; false if it is locked, evicted or removed
+     */
+    private boolean claim(HostedWorld hosted) {
+        // tryLock: the owner of the lock may be waiting for the budget
+        if (!hosted.lock.tryLock()) {
+            return false;
+        }
+        if (hosted.world == null || hosted.removed) {
+            hosted.lock.unlock();
+            return false;
+        }
+        hosted.evicting = true;
+        evictingBytes += hosted.bytes;
+        return true;
+    }
+
+    /**
+     * Write a claimed world to the store and drop it from memory, then unlock it (budget must not be held)
+     *
+     * @param hosted world claimed for eviction
+     * @throws IOException error while writing the world (the world stays in memory)
+     */
+    private void writeOut(HostedWorld hosted) throws IOException {
+        try {
+            InputOutput.createFile(hosted.world.snapshot(), hosted.file.toString(), (done, total) -> true);
+            hosted.world = null;
+            evictions.incrementAndGet();
+        } finally {
+            synchronized (budget) {
+                hosted.evicting = false;
+                evictingBytes -= hosted.bytes;
+                if (hosted.world == null) {
+                    residentBytes -= hosted.bytes;
+                }
+                budget.notifyAll();
+            }
+            hosted.lock.unlock();
+        }
+    }
+
+    /**
+     * Evict worlds not accessed within the idle timeout
+     */
+    private void evictIdle() {
+        long now = System.nanoTime();
+        for (HostedWorld hosted : worlds.values()) {
+            if (hosted.world != null && now - hosted.lastAccess > idleNanos) {
+                try {
+                    evict(hosted);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
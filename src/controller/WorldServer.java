@@ -0,0 +1,352 @@
+package controller;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import model.InputOutput;
+import model.Snapshot;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executors;
+
+/**
+ * Headless server hosting many worlds (see WorldHost), commands are HTTP requests on localhost
+ * <p>
+ * POST /worlds?width=W&amp;height=H[&amp;engine=name][&amp;torus=true] creates a world and answers its id.
+ * POST /worlds/ID/pattern[?x=X&amp;y=Y] places the pattern in the body (InputOutput text format).
+ * POST /worlds/ID/step?n=N[&amp;wait=millis] queues N generations, optionally waiting until they are developed.
+ * GET /worlds/ID answers generation, population and state, GET /worlds/ID/region?x=X&amp;y=Y&amp;width=W&amp;height=H
+ * answers the region as rows of O (alive) and . (dead), GET /worlds/ID/snapshot answers the whole board in
+ * InputOutput text format, DELETE /worlds/ID removes a world and GET /stats answers counters of the host.
+ * Answers are plain text, one name=value per line.
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public class WorldServer {
+    private static final String DEFAULT_ENGINE = "TiledModel";
+    private static final long MAX_REGION_CELLS = 1 << 22;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final WorldHost host;
+    private final Path store;
+    private final HttpServer server;
+
+    /**
+     * Process server arguments: --serve [--port=int] [--workers=int] [--slice-ms=int] [--world-memory=size]
+     * [--memory=size] [--idle-seconds=int] [--store=dir], runs until the process is stopped
+     *
+     * @param args program arguments
+     * @throws IOException server can't be started
+     */
+    public static void run(String[] args) throws IOException {
+        HashMap<String, String> options = new HashMap<>();
+        CLI.parseOptions(args, options);
+        if (options.containsKey("help")) {
+            System.out.println("--serve --port=int: port on localhost (default 8080)");
+            System.out.println("        --workers=int: worker threads (default available processors)");
+            System.out.println("        --slice-ms=int: time slice per world and turn (default 10)");
+            System.out.println("        --world-memory=size: memory limit per world (default 64m)");
+            System.out.println("        --memory=size: memory limit of all worlds in memory (default half of the heap)");
+            System.out.println("        --idle-seconds=int: evict worlds idle for this time, 0 = only when memory is needed (default 60)");
+            System.out.println("        --store=dir: directory for evicted worlds (default temporary directory)");
+            System.out.println();
+            return;
+        }
+        int port = Integer.parseInt(options.getOrDefault("port", "8080"));
+        int workers = Integer.parseInt(options.getOrDefault("workers", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        long sliceMillis = Long.parseLong(options.getOrDefault("slice-ms", "10"));
+        long worldMemory = parseSize(options.getOrDefault("world-memory", "64m"));
+        long memory = options.containsKey("memory") ? parseSize(options.get("memory")) : Runtime.getRuntime().maxMemory() / 2;
+        long idleSeconds = Long.parseLong(options.getOrDefault("idle-seconds", "60"));
+        Path store = options.containsKey("store") ? Paths.get(options.get("store")) : Files.createTempDirectory("gol-worlds");
+        Files.createDirectories(store);
+
+        WorldServer server = new WorldServer(new WorldHost(Math.max(1, workers), sliceMillis, worldMemory, memory, idleSeconds, store), store, port);
+        System.out.println("Serving on http://localhost:" + server.getPort() + "/ with " + workers + " workers, evicted worlds in " + store);
+    }
+
+    /**
+     * Constructor, starts listening on localhost
+     *
+     * @param host  hosted worlds
+     * @param store directory for temporary files
+     * @param port  port, 0 = any free port
+     * @throws IOException port can't be bound
+     */
+    public WorldServer(WorldHost host, Path store, int port) throws IOException {
+        this.host = host;
+        this.store = store;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/", this::handle);
+        // Requests waiting for generations hold a thread, so more threads than workers
+        server.setExecutor(Executors.newFixedThreadPool(16));
+        server.start();
+    }
+
+    /**
+     * Get port the server listens on
+     *
+     * @return port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stop server and host
+     */
+    public void stop() {
+        server.stop(0);
+        host.shutdown();
+    }
+
+    /**
+     * Handle one request, errors are answered with a status code and message
+     *
+     * @param exchange request and response
+     * @throws IOException connection lost
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            route(exchange);
+        } catch (NoSuchElementException e) {
+            send(exchange, 404, "error=" + e.getMessage() + "\n");
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, "error=" + e.getMessage() + "\n");
+        } catch (IllegalStateException e) {
+            send(exchange, 503, "error=" + e.getMessage() + "\n");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            send(exchange, 503, "error=interrupted\n");
+        } catch (IOException e) {
+            send(exchange, 500, "error=" + e + "\n");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Dispatch request by method and path
+     *
+     * @param exchange request and response
+     * @throws IOException          error while reading or writing a world
+     * @throws InterruptedException interrupted while waiting for generations
+     */
+    private void route(HttpExchange exchange) throws IOException, InterruptedException {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().replaceAll("^/+|/+$", "").split("/+");
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+        if (path.length == 1 && path[0].equals("stats") && method.equals("GET")) {
+            send(exchange, 200, format(host.stats()));
+            return;
+        }
+        if (path.length == 1 && path[0].equals("worlds") && method.equals("POST")) {
+            long id = host.create(query.getOrDefault("engine", DEFAULT_ENGINE), intParameter(query, "width", -1), intParameter(query, "height", -1),
+                    Boolean.parseBoolean(query.getOrDefault("torus", "false")));
+            send(exchange, 201, "id=" + id + "\n");
+            return;
+        }
+        if (path.length < 2 || !path[0].equals("worlds")) {
+            throw new NoSuchElementException("Unknown path " + exchange.getRequestURI().getPath());
+        }
+        long id;
+        try {
+            id = Long.parseLong(path[1]);
+        } catch (NumberFormatException e) {
+            throw new NoSuchElementException("No world " + path[1]);
+        }
+        String action = path.length > 2 ? path[2] : "";
+        switch (method + " " + action) {
+            case "GET ":
+                send(exchange, 200, format(host.status(id)));
+                break;
+            case "DELETE ":
+                host.remove(id);
+                send(exchange, 200, "removed=" + id + "\n");
+                break;
+            case "POST pattern":
+                host.place(id, readPattern(exchange), intParameter(query, "x", 0), intParameter(query, "y", 0));
+                send(exchange, 200, format(host.status(id)));
+                break;
+            case "POST step":
+                long target = host.step(id, Long.parseLong(query.getOrDefault("n", "1")));
+                boolean reached = host.await(id, target, Long.parseLong(query.getOrDefault("wait", "0")));
+                send(exchange, 200, "target=" + target + "\nreached=" + reached + "\n");
+                break;
+            case "GET region":
+                sendRegion(exchange, id, query);
+                break;
+            case "GET snapshot":
+                sendSnapshot(exchange, id);
+                break;
+            default:
+                throw new NoSuchElementException("Unknown command " + method + " " + exchange.getRequestURI().getPath());
+        }
+    }
+
+    /**
+     * Answer a region as rows of O (alive) and . (dead)
+     *
+     * @param exchange request and response
+     * @param id       world id
+     * @param query    query parameters x, y, width, height
+     * @throws IOException error while reading an evicted world
+     */
+    private void sendRegion(HttpExchange exchange, long id, Map<String, String> query) throws IOException {
+        int width = intParameter(query, "width", -1);
+        int height = intParameter(query, "height", -1);
+        if (width <= 0 || height <= 0 || (long) width * height > MAX_REGION_CELLS) {
+            throw new IllegalArgumentException("Region must have 1 to " + MAX_REGION_CELLS + " cells");
+        }
+        WorldHost.Capture capture = host.capture(id, intParameter(query, "x", 0), intParameter(query, "y", 0), width, height);
+        StringBuilder text = new StringBuilder((width + 1) * height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                text.append(capture.snapshot.isAlive(x, y) ? 'O' : '.');
+            }
+            text.append('\n');
+        }
+        exchange.getResponseHeaders().set("X-Generation", String.valueOf(capture.generation));
+        send(exchange, 200, text.toString());
+    }
+
+    /**
+     * Answer the whole board in InputOutput text format
+     *
+     * @param exchange request and response
+     * @param id       world id
+     * @throws IOException error while writing the board
+     */
+    private void sendSnapshot(HttpExchange exchange, long id) throws IOException {
+        WorldHost.Capture capture = host.capture(id);
+        Path file = Files.createTempFile(store, "snapshot-", ".txt");
+        try {
+            InputOutput.createFile(capture.snapshot, file.toString(), (done, total) -> true);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.getResponseHeaders().set("X-Generation", String.valueOf(capture.generation));
+            exchange.sendResponseHeaders(200, Files.size(file));
+            try (OutputStream out = exchange.getResponseBody()) {
+                Files.copy(file, out);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Read the pattern in the request body (InputOutput text format)
+     *
+     * @param exchange request
+     * @return pattern
+     * @throws IOException error while reading the body
+     */
+    private Snapshot readPattern(HttpExchange exchange) throws IOException {
+        Path file = Files.createTempFile(store, "pattern-", ".txt");
+        try {
+            Files.copy(exchange.getRequestBody(), file, StandardCopyOption.REPLACE_EXISTING);
+            return InputOutput.readSnapshot(file.toString(), (done, total) -> true);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid pattern: " + e, e);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Send plain text answer
+     *
+     * @param exchange request and response
+     * @param status   HTTP status code
+     * @param text     answer
+     * @throws IOException connection lost
+     */
+    private static void send(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] body = text.getBytes(UTF8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Format name=value lines
+     *
+     * @param values name and value per line
+     * @return text
+     */
+    private static String format(Map<String, Object> values) {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            text.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Parse query string
+     *
+     * @param rawQuery query string as sent (may be null)
+     * @return decoded parameters
+     * @throws UnsupportedEncodingException never (UTF-8 is always supported)
+     */
+    private static Map<String, String> parseQuery(String rawQuery) throws UnsupportedEncodingException {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery != null) {
+            for (String parameter : rawQuery.split("&")) {
+                int equals = parameter.indexOf('=');
+                if (equals < 0) {
+                    query.put(URLDecoder.decode(parameter, "UTF-8"), "");
+                } else {
+                    query.put(URLDecoder.decode(parameter.substring(0, equals), "UTF-8"), URLDecoder.decode(parameter.substring(equals + 1), "UTF-8"));
+                }
+            }
+        }
+        return query;
+    }
+
+    /**
+     * Get int query parameter
+     *
+     * @param query        decoded parameters
+     * @param name         parameter name
+     * @param defaultValue value if missing
+     * @return value
+     */
+    private static int intParameter(Map<String, String> query, String name, int defaultValue) {
+        String value = query.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    /**
+     * Parse memory size with optional unit (k, m, g)
+     *
+     * @param size e.g. 64m
+     * @return bytes
+     */
+    static long parseSize(String size) {
+        String lower = size.trim().toLowerCase();
+        long unit = 1;
+        if (lower.endsWith("k")) {
+            unit = 1L << 10;
+        } else if (lower.endsWith("m")) {
+            unit = 1L << 20;
+        } else if (lower.endsWith("g")) {
+            unit = 1L << 30;
+        }
+        return Long.parseLong(unit == 1 ? lower : lower.substring(0, lower.length() - 1)) * unit;
+    }
+}
@@ -1,21 +1,23 @@
 package model;
 
-import view.View;
-
 import java.util.ArrayList;
 import java.util.BitSet;
-import java.util.Observable;
+import java.util.concurrent.Executor;
 
 /**
  * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
  */
-public class BitSetModel extends Observable implements Buildable {
+public class BitSetModel implements Buildable {
 
 
     private BitSet board;
     private int xLength;
     private int yLength;
     private boolean torus;
+    private DensityTiles tiles;
+    private int births;
+    private int deaths;
+    private final ModelListeners listeners = new ModelListeners(this);
 
 
     /**
@@ -28,6 +30,7 @@ public class BitSetModel extends Observable implements Buildable {
         this.xLength = xLength;
         this.yLength = yLength;
         this.board = new BitSet(xLength * yLength);
+        this.tiles = new DensityTiles(xLength, yLength);
     }
 
     /**
@@ -42,6 +45,18 @@ public class BitSetModel extends Observable implements Buildable {
         initBoard(positions);
     }
 
+    /**
+     * Constructor (board copied from a snapshot, e.g. of another model; words are taken over as they are)
+     *
+     * @param snapshot board
+     */
+    public BitSetModel(Snapshot snapshot) {
+        this.xLength = snapshot.getXLength();
+        this.yLength = snapshot.getYLength();
+        this.board = BitSet.valueOf(snapshot.getWords());
+        this.tiles = DensityTiles.of(snapshot);
+    }
+
     /**
      * Initialize board with living cells
      *
@@ -52,9 +67,8 @@ public class BitSetModel extends Observable implements Buildable {
         for (Integer[] array : positions) {
             this.board.set(array[0] + array[1] * xLength);
         }
-        System.out.println("--BitSet  INIT");
-        setChanged();
-        notifyObservers(new ModelEvent(EventTypes.CHANGE_SIZE));
+        this.tiles = DensityTiles.of(snapshot());
+        listeners.fire(EventTypes.CHANGE_SIZE);
     }
 
     /**
@@ -65,30 +79,14 @@ public class BitSetModel extends Observable implements Buildable {
      */
     @Override
     public void setBoardSize(int x, int y) {
-        BitSet newBoard = new BitSet(x * y);
-        int j = 0;
-        if (x > this.xLength) {
-            for (int i = 0; i < this.xLength * this.yLength; j++) {
-                if (j % x < this.xLength) {
-                    newBoard.set(j, board.get(i));
-                    i++;
-                }
-            }
-        } else {
-            for (int i = 0; i < x * y; j++) {
-                if (j % this.xLength < x) {
-                    newBoard.set(i, board.get(j));
-                    i++;
-                }
-            }
-        }
-        this.board = newBoard;
+        // Copy kept part of every row as whole words
+        Snapshot resized = Bits.region(board.toLongArray(), xLength, yLength, 0, 0, x, y);
+        this.board = BitSet.valueOf(resized.getWords());
         this.xLength = x;
         this.yLength = y;
+        this.tiles = DensityTiles.of(resized);
 
-        System.out.println("--BitSet  SET:" + getXLength() + "," + getYLength());
-        setChanged();
-        notifyObservers(new ModelEvent(EventTypes.CHANGE_SIZE));
+        listeners.fire(EventTypes.CHANGE_SIZE);
     }
 
     /**
@@ -97,8 +95,8 @@ public class BitSetModel extends Observable implements Buildable {
     @Override
     public void resetBoard() {
         this.board = new BitSet(xLength * yLength);
-        setChanged();
-        notifyObservers(new ModelEvent(EventTypes.RESET_BOARD));
+        this.tiles = new DensityTiles(xLength, yLength);
+        listeners.fire(EventTypes.RESET_BOARD);
     }
 
     /**
@@ -117,6 +115,48 @@ public class BitSetModel extends Observable implements Buildable {
         return positions;
     }
 
+    /**
+     * Get copy of current board
+     *
+     * @return snapshot of living cells
+     */
+    @Override
+    public Snapshot snapshot() {
+        return new Snapshot(xLength, yLength, board.toLongArray());
+    }
+
+    /**
+     * Get copy of a region of the current board (cells outside of the board are dead)
+     *
+     * @param x      left column of region
+     * @param y      top row of region
+     * @param width  width of region
+     * @param height height of region
+     * @return snapshot of the region, coordinates relative to (x,y)
+     */
+    @Override
+    public Snapshot snapshot(int x, int y, int width, int height) {
+        long[] words = new long[Snapshot.wordCount(width, height)];
+        int fromX = Math.max(x, 0);
+        int toX = Math.min(x + width, xLength);
+        for (int row = Math.max(y, 0); row < Math.min(y + height, yLength) && fromX < toX; row++) {
+            // Copy row by row, BitSet.get(from, to) works on whole words
+            long[] cells = board.get(row * xLength + fromX, row * xLength + toX).toLongArray();
+            Bits.copy(cells, 0, words, (long) (row - y) * width + fromX - x, toX - fromX);
+        }
+        return new Snapshot(width, height, words);
+    }
+
+    /**
+     * Get population of 8x8 tiles of the current board
+     *
+     * @return tile summary
+     */
+    @Override
+    public DensityTiles getDensityTiles() {
+        return tiles;
+    }
+
     /**
      * Get board width
      *
@@ -147,12 +187,25 @@ public class BitSetModel extends Observable implements Buildable {
         this.torus = torus;
     }
 
+    /**
+     * Get surface mode
+     *
+     * @return true = torus, false = hard limit
+     */
+    @Override
+    public boolean isTorus() {
+        return torus;
+    }
+
     /**
      * Develop current generation to the next one
      */
     @Override
     public void developGeneration() {
         BitSet nextGenerationBoard = cloneGeneration(this.board);
+        DensityTiles nextTiles = new DensityTiles(xLength, yLength);
+        int born = 0;
+        int died = 0;
 
         // Decide the fate of each cell
         for (int i = 0; i < xLength * yLength; i++) {
@@ -169,10 +222,43 @@ public class BitSetModel extends Observable implements Buildable {
             if (numNeighbors == 3) {
                 nextGenerationBoard.set(i, true);
             }
+            boolean alive = nextGenerationBoard.get(i);
+            if (alive) {
+                nextTiles.add(i % xLength, i / xLength, 1);
+            }
+            if (alive != this.board.get(i)) {
+                if (alive) {
+                    born++;
+                } else {
+                    died++;
+                }
+            }
         }
         this.board = nextGenerationBoard;
-        this.setChanged();
-        notifyObservers(new ModelEvent(EventTypes.UPDATED_BOARD));
+        this.tiles = nextTiles;
+        this.births = born;
+        this.deaths = died;
+        listeners.fire(EventTypes.UPDATED_BOARD);
+    }
+
+    /**
+     * Get number of cells born in the last developed generation
+     *
+     * @return births
+     */
+    @Override
+    public int getBirths() {
+        return births;
+    }
+
+    /**
+     * Get number of cells died in the last developed generation
+     *
+     * @return deaths
+     */
+    @Override
+    public int getDeaths() {
+        return deaths;
     }
 
     /**
@@ -191,6 +277,7 @@ public class BitSetModel extends Observable implements Buildable {
 
     /**
      * Count neighbors of one specific cell (x,y)
+     * (works on coordinates like BooleanModel, so both engines treat edges and tiny boards the same way)
      *
      * @param board current board
      * @param i     specific cell
@@ -198,100 +285,48 @@ public class BitSetModel extends Observable implements Buildable {
      */
     private int countNeighbors(BitSet board, int i) {
         int numNeighbors = 0;
+        int x = i % xLength;
+        int y = i / xLength;
+        int above, below;
+        int left, right;
         if (!torus) {
-            // Torus off
-            // Look ABOVE, LEFT
-            if (i - xLength - 1 >= 0 && (i - xLength - 1) % (xLength - 1) != 0) {
-                numNeighbors = board.get(i - xLength - 1) ? numNeighbors + 1 : numNeighbors;
-            }
-            // Look ABOVE
-            if (i - xLength >= 0) {
-                numNeighbors = board.get(i - xLength) ? numNeighbors + 1 : numNeighbors;
-            }
-            // Look ABOVE, RIGHT
-            if (i - xLength + 1 >= 0 && (i - xLength + 1) % xLength != 0) {
-                numNeighbors = board.get(i - xLength + 1) ? numNeighbors + 1 : numNeighbors;
-            }
-            // Look LEFT
-            if (i - 1 >= 0 && (i - 1) % (xLength - 1) != 0) {
-                numNeighbors = board.get(i - 1) ? numNeighbors + 1 : numNeighbors;
-            }
-            // Look RIGHT
-            if ((i + 1) % xLength != 0) {
-                numNeighbors = board.get(i + 1) ? numNeighbors + 1 : numNeighbors;
-            }
-            // Look BELOW, LEFT
-            if ((i + xLength - 1) % (xLength - 1) != 0) {
-                numNeighbors = board.get(i + xLength - 1) ? numNeighbors + 1 : numNeighbors;
-            }
-            // Look BELOW
-            numNeighbors = board.get(i + xLength) ? numNeighbors + 1 : numNeighbors;
-            // Look BELOW, RIGHT
-            if ((i + xLength + 1) % xLength != 0) {
-                numNeighbors = board.get(i + xLength + 1) ? numNeighbors + 1 : numNeighbors;
-            }
+            // Torus off, -1 marks a missing row or column
+            above = y > 0 ? y - 1 : -1;
+            below = y < yLength - 1 ? y + 1 : -1;
+            left = x > 0 ? x - 1 : -1;
+            right = x < xLength - 1 ? x + 1 : -1;
         } else {
             // Torus on
-            // Look ABOVE, LEFT
-            if (i - xLength - 1 >= 0 && (i - xLength - 1) % xLength != (xLength - 1)) {
-                numNeighbors = board.get(i - xLength - 1) ? numNeighbors + 1 : numNeighbors;
-            } else if (i - xLength < 0) {
-                numNeighbors = board.get((i + xLength - 1) % xLength + (yLength - 1) * xLength) ? numNeighbors + 1 : numNeighbors;
-            } else {
-                numNeighbors = board.get(i - 1) ? numNeighbors + 1 : numNeighbors;
-            }
-            // Look ABOVE
-            if (i - xLength >= 0) {
-                numNeighbors = board.get(i - xLength) ? numNeighbors + 1 : numNeighbors;
-            } else {
-                numNeighbors = board.get(i + (yLength - 1) * xLength) ? numNeighbors + 1 : numNeighbors;
-            }
-            // Look ABOVE, RIGHT
-            if (i - xLength + 1 >= 0 && (i - xLength + 1) % xLength != 0) {
-                numNeighbors = board.get(i - xLength + 1) ? numNeighbors + 1 : numNeighbors;
-            } else if (i - xLength + 1 <= 0) {
-                numNeighbors = board.get(((i + 1) % xLength) + (yLength - 1) * xLength) ? numNeighbors + 1 : numNeighbors;
-            } else {
-                numNeighbors = board.get(i - 2 * xLength + 1) ? numNeighbors + 1 : numNeighbors;
-            }
-            // Look LEFT
-            if (i - 1 >= 0 && (i - 1) % xLength != (xLength - 1)) {
-                numNeighbors = board.get(i - 1) ? numNeighbors + 1 : numNeighbors;
-            } else {
-                numNeighbors = board.get(i + xLength - 1) ? numNeighbors + 1 : numNeighbors;
-            }
-            // Look RIGHT
-            if ((i + 1) % xLength != 0) {
-                numNeighbors = board.get(i + 1) ? numNeighbors + 1 : numNeighbors;
-            } else {
-                numNeighbors = board.get(i - xLength + 1) ? numNeighbors + 1 : numNeighbors;
-            }
-            // Look BELOW, LEFT
-            if ((i + xLength - 1) % xLength != (xLength - 1) && i < (yLength - 1) * xLength) {
-                numNeighbors = board.get(i + xLength - 1) ? numNeighbors + 1 : numNeighbors;
-            } else if (i >= (yLength - 1) * xLength) {
-                numNeighbors = board.get((i - 1) % xLength) ? numNeighbors + 1 : numNeighbors;
-            } else {
-                numNeighbors = board.get(i + 2 * xLength - 1) ? numNeighbors + 1 : numNeighbors;
-            }
-            // Look BELOW
-            if (i < (yLength - 1) * xLength) {
-                numNeighbors = board.get(i + xLength) ? numNeighbors + 1 : numNeighbors;
-            } else {
-                numNeighbors = board.get(i % xLength) ? numNeighbors + 1 : numNeighbors;
-            }
-            // Look BELOW, RIGHT
-            if ((i + xLength + 1) % xLength != 0 && i < (yLength - 1) * xLength) {
-                numNeighbors = board.get(i + xLength + 1) ? numNeighbors + 1 : numNeighbors;
-            } else if (i >= (yLength - 1) * xLength) {
-                numNeighbors = board.get((i + 1) % xLength) ? numNeighbors + 1 : numNeighbors;
-            } else {
-                numNeighbors = board.get(i + 1) ? numNeighbors + 1 : numNeighbors;
-            }
+            above = y > 0 ? y - 1 : yLength - 1;
+            below = y < yLength - 1 ? y + 1 : 0;
+            left = x > 0 ? x - 1 : xLength - 1;
+            right = x < xLength - 1 ? x + 1 : 0;
+        }
+        if (above >= 0) {
+            // Look ABOVE, LEFT / ABOVE / ABOVE, RIGHT
+            numNeighbors += count(board, left, above) + count(board, x, above) + count(board, right, above);
+        }
+        // Look LEFT / RIGHT
+        numNeighbors += count(board, left, y) + count(board, right, y);
+        if (below >= 0) {
+            // Look BELOW, LEFT / BELOW / BELOW, RIGHT
+            numNeighbors += count(board, left, below) + count(board, x, below) + count(board, right, below);
         }
         return numNeighbors;
     }
 
+    /**
+     * Check one neighbor
+     *
+     * @param board current board
+     * @param x     x coordinate (-1 = outside of board)
+     * @param y     y coordinate
+     * @return 1 if the cell is alive, otherwise 0
+     */
+    private int count(BitSet board, int x, int y) {
+        return x >= 0 && board.get(x + y * xLength) ? 1 : 0;
+    }
+
 
     /**
      * Toggle cell (living cell dies, dead cell is born)
@@ -302,28 +337,51 @@ public class BitSetModel extends Observable implements Buildable {
     @Override
     public void toggleCell(int x, int y) {
         this.board.flip(x + this.xLength * y);
-        setChanged();
-        notifyObservers(new ModelEvent(EventTypes.UPDATED_BOARD));
+        tiles.add(x, y, this.board.get(x + this.xLength * y) ? 1 : -1);
+        listeners.fire(EventTypes.UPDATED_BOARD, x, y, 1, 1);
+    }
+
+    /**
+     * Set many cells alive or dead, observers are notified once (cells outside of the board are skipped)
+     *
+     * @param batch cells with their new state
+     */
+    @Override
+    public void setCells(CellBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            int x = batch.getX(i);
+            int y = batch.getY(i);
+            int index = x + this.xLength * y;
+            if (x < 0 || y < 0 || x >= this.xLength || y >= this.yLength || this.board.get(index) == batch.isAlive(i)) {
+                continue;
+            }
+            this.board.set(index, batch.isAlive(i));
+            tiles.add(x, y, batch.isAlive(i) ? 1 : -1);
+        }
+        if (batch.size() > 0) {
+            listeners.fire(EventTypes.UPDATED_BOARD, batch.getMinX(), batch.getMinY(), batch.getWidth(), batch.getHeight());
+        }
     }
 
     /**
-     * Add observer
+     * Add listener
      *
-     * @param view instance of View
+     * @param listener listener
+     * @param executor executor delivering events
      */
     @Override
-    public void addObserver(View view) {
-        super.addObserver(view);
+    public void addListener(ModelListener listener, Executor executor) {
+        listeners.add(listener, executor);
     }
 
     /**
-     * Remove observer
+     * Remove listener
      *
-     * @param view instance of View
+     * @param listener listener
      */
     @Override
-    public void deleteObserver(View view) {
-        super.deleteObserver(view);
+    public void removeListener(ModelListener listener) {
+        listeners.remove(listener);
     }
 
 }
@@ -0,0 +1,88 @@
+package model;
+
+/**
+ * Bit range operations on boards packed into longs (bit i of the board = bit (i % 64) of word i / 64)
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public class Bits {
+
+    /**
+     * Read 64 bits starting at a bit position (bits beyond the array are 0)
+     *
+     * @param words packed bits
+     * @param pos   first bit
+     * @return bits pos..pos+63, bit pos in the lowest bit
+     */
+    public static long read(long[] words, long pos) {
+        int w = (int) (pos >>> 6);
+        int offset = (int) (pos & 63);
+        long low = w < words.length ? words[w] >>> offset : 0;
+        if (offset == 0) {
+            return low;
+        }
+        long high = w + 1 < words.length ? words[w + 1] << (64 - offset) : 0;
+        return low | high;
+    }
+
+    /**
+     * Write the lowest n bits at a bit position, other bits are kept
+     *
+     * @param words packed bits
+     * @param pos   first bit
+     * @param bits  bits to write
+     * @param n     number of bits (1 - 64)
+     */
+    public static void write(long[] words, long pos, long bits, int n) {
+        long mask = n == 64 ? -1L : (1L << n) - 1;
+        bits &= mask;
+        int w = (int) (pos >>> 6);
+        int offset = (int) (pos & 63);
+        words[w] = words[w] & ~(mask << offset) | bits << offset;
+        if (offset + n > 64) {
+            long highMask = (1L << (offset + n - 64)) - 1;
+            words[w + 1] = words[w + 1] & ~highMask | bits >>> (64 - offset);
+        }
+    }
+
+    /**
+     * Copy a bit range (like System.arraycopy, ranges must not overlap)
+     *
+     * @param src    source bits
+     * @param srcPos first source bit
+     * @param dst    destination bits
+     * @param dstPos first destination bit
+     * @param length number of bits
+     */
+    public static void copy(long[] src, long srcPos, long[] dst, long dstPos, long length) {
+        while (length > 0) {
+            int n = (int) Math.min(64, length);
+            write(dst, dstPos, read(src, srcPos), n);
+            srcPos += n;
+            dstPos += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Copy a rectangular region of a board into a new snapshot (cells outside the board are dead)
+     *
+     * @param words   packed board
+     * @param xLength width of board
+     * @param yLength height of board
+     * @param x       left column of region
+     * @param y       top row of region
+     * @param width   width of region
+     * @param height  height of region
+     * @return snapshot of the region
+     */
+    public static Snapshot region(long[] words, int xLength, int yLength, int x, int y, int width, int height) {
+        long[] region = new long[Snapshot.wordCount(width, height)];
+        int fromX = Math.max(x, 0);
+        int toX = Math.min(x + width, xLength);
+        for (int row = Math.max(y, 0); row < Math.min(y + height, yLength) && fromX < toX; row++) {
+            copy(words, (long) row * xLength + fromX, region, (long) (row - y) * width + fromX - x, toX - fromX);
+        }
+        return new Snapshot(width, height, region);
+    }
+}
@@ -0,0 +1,547 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+/**
+ * Temporally blocked engine: develops several generations per pass over the board
+ * <p>
+ * The board is processed in blocks of 16 words (1024 cells) by 128 rows. Each block is copied into a small buffer
+ * together with a halo of one word left and right and DEPTH rows above and below, developed up to DEPTH generations
+ * in the buffer while it stays in cache (the valid area shrinks by one cell per generation), and only the block
+ * itself is written to the next board. Memory traffic per generation drops by about the depth, the extra work for
+ * the halo is about a quarter. Cells are developed 64 at a time with a bit-sliced adder tree.
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public class BlockedModel implements Buildable {
+    // Generations per pass, at most 64 (the horizontal halo is one word)
+    public static final int DEPTH = 8;
+    private static final int BLOCK_WORDS = 16;
+    private static final int BLOCK_ROWS = 128;
+    private static final int BUFFER_WORDS = BLOCK_WORDS + 2;
+
+    private long[] cells;
+    private long[] next;
+    private int xLength;
+    private int yLength;
+    private int wordsPerRow;
+    private long lastWordMask;
+    private boolean torus;
+    private DensityTiles tiles;
+    private int births;
+    private int deaths;
+    private final ModelListeners listeners = new ModelListeners(this);
+
+    // Block buffers (reused), valid bits per buffer word for the hard limit
+    private long[] buffer = new long[0];
+    private long[] scratch = new long[0];
+    private final long[] columnMask = new long[BUFFER_WORDS];
+
+    /**
+     * Constructor (empty board)
+     *
+     * @param xLength width of board
+     * @param yLength height of board
+     */
+    public BlockedModel(int xLength, int yLength) {
+        load(new Snapshot(xLength, yLength, new long[Snapshot.wordCount(xLength, yLength)]));
+    }
+
+    /**
+     * Constructor (board with living cells)
+     *
+     * @param xLength   width of board
+     * @param yLength   height of board
+     * @param positions coordinates of living cells (x,y)
+     */
+    public BlockedModel(int xLength, int yLength, ArrayList<Integer[]> positions) {
+        this(xLength, yLength);
+        initBoard(positions);
+    }
+
+    /**
+     * Constructor (board copied from a snapshot, e.g. of another model)
+     *
+     * @param snapshot board
+     */
+    public BlockedModel(Snapshot snapshot) {
+        load(snapshot);
+    }
+
+    /**
+     * Replace board
+     *
+     * @param snapshot board
+     */
+    private void load(Snapshot snapshot) {
+        this.xLength = snapshot.getXLength();
+        this.yLength = snapshot.getYLength();
+        this.wordsPerRow = (xLength + 63) >>> 6;
+        this.lastWordMask = (xLength & 63) == 0 ? -1L : (1L << (xLength & 63)) - 1;
+        this.cells = new long[wordsPerRow * yLength];
+        this.next = new long[cells.length];
+        for (int y = 0; y < yLength; y++) {
+            Bits.copy(snapshot.getWords(), (long) y * xLength, cells, (long) y * wordsPerRow << 6, xLength);
+        }
+        this.tiles = DensityTiles.of(snapshot);
+    }
+
+    /**
+     * Initialize board with living cells
+     *
+     * @param positions coordinates of living cells
+     */
+    @Override
+    public void initBoard(ArrayList<Integer[]> positions) {
+        for (Integer[] array : positions) {
+            this.cells[array[1] * wordsPerRow + (array[0] >>> 6)] |= 1L << array[0];
+        }
+        this.tiles = DensityTiles.of(snapshot());
+        listeners.fire(EventTypes.CHANGE_SIZE);
+    }
+
+    /**
+     * Resize board
+     *
+     * @param x new width of board
+     * @param y new height of board
+     */
+    @Override
+    public void setBoardSize(int x, int y) {
+        load(snapshot(0, 0, x, y));
+        listeners.fire(EventTypes.CHANGE_SIZE);
+    }
+
+    /**
+     * Clear board
+     */
+    @Override
+    public void resetBoard() {
+        Arrays.fill(cells, 0);
+        this.tiles = new DensityTiles(xLength, yLength);
+        listeners.fire(EventTypes.RESET_BOARD);
+    }
+
+    /**
+     * Get living cells
+     *
+     * @return coordinates of living cells
+     */
+    @Override
+    public ArrayList<Integer[]> getPositions() {
+        ArrayList<Integer[]> positions = new ArrayList<>();
+        for (int y = 0; y < yLength; y++) {
+            for (int w = 0; w < wordsPerRow; w++) {
+                long word = cells[y * wordsPerRow + w];
+                while (word != 0) {
+                    positions.add(new Integer[]{(w << 6) + Long.numberOfTrailingZeros(word), y});
+                    word &= word - 1;
+                }
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Get copy of current board
+     *
+     * @return snapshot of living cells
+     */
+    @Override
+    public Snapshot snapshot() {
+        return snapshot(0, 0, xLength, yLength);
+    }
+
+    /**
+     * Get copy of a region of the current board (cells outside of the board are dead)
+     *
+     * @param x      left column of region
+     * @param y      top row of region
+     * @param width  width of region
+     * @param height height of region
+     * @return snapshot of the region, coordinates relative to (x,y)
+     */
+    @Override
+    public Snapshot snapshot(int x, int y, int width, int height) {
+        long[] words = new long[Snapshot.wordCount(width, height)];
+        int fromX = Math.max(x, 0);
+        int toX = Math.min(x + width, xLength);
+        for (int row = Math.max(y, 0); row < Math.min(y + height, yLength) && fromX < toX; row++) {
+            Bits.copy(cells, ((long) row * wordsPerRow << 6) + fromX, words, (long) (row - y) * width + fromX - x, toX - fromX);
+        }
+        return new Snapshot(width, height, words);
+    }
+
+    /**
+     * Get population of 8x8 tiles of the current board
+     *
+     * @return tile summary
+     */
+    @Override
+    public DensityTiles getDensityTiles() {
+        return tiles;
+    }
+
+    /**
+     * Get board width
+     *
+     * @return width of board (x length)
+     */
+    @Override
+    public int getXLength() {
+        return this.xLength;
+    }
+
+    /**
+     * Get board height
+     *
+     * @return height of board (y length)
+     */
+    @Override
+    public int getYLength() {
+        return this.yLength;
+    }
+
+    /**
+     * Set surface mode
+     *
+     * @param torus true = torus, false = hard limit
+     */
+    @Override
+    public void setTorus(boolean torus) {
+        this.torus = torus;
+    }
+
+    /**
+     * Get surface mode
+     *
+     * @return true = torus, false = hard limit
+     */
+    @Override
+    public boolean isTorus() {
+        return torus;
+    }
+
+    /**
+     * Develop current generation to the next one
+     */
+    @Override
+    public void developGeneration() {
+        developGenerations(1);
+    }
+
+    /**
+     * Develop several generations, DEPTH generations per pass over the board
+     *
+     * @param generations number of generations
+     */
+    @Override
+    public void developGenerations(int generations) {
+        if (generations <= 0 || cells.length == 0) {
+            return;
+        }
+        while (generations > 0) {
+            int depth = Math.min(DEPTH, generations);
+            pass(depth);
+            generations -= depth;
+        }
+        listeners.fire(EventTypes.UPDATED_BOARD);
+    }
+
+    /**
+     * Develop all blocks by some generations into the next board
+     *
+     * @param depth generations (1 - DEPTH)
+     */
+    private void pass(int depth) {
+        int size = BUFFER_WORDS * (BLOCK_ROWS + 2 * depth);
+        if (buffer.length < size) {
+            this.buffer = new long[size];
+            this.scratch = new long[size];
+        }
+        DensityTiles nextTiles = new DensityTiles(xLength, yLength);
+        int born = 0;
+        int died = 0;
+        for (int top = 0; top < yLength; top += BLOCK_ROWS) {
+            for (int left = 0; left < wordsPerRow; left += BLOCK_WORDS) {
+                long changes = developBlock(left, top, depth, nextTiles);
+                born += (int) (changes >>> 32);
+                died += (int) changes;
+            }
+        }
+        long[] swap = cells;
+        this.cells = next;
+        this.next = swap;
+        this.tiles = nextTiles;
+        this.births = born;
+        this.deaths = died;
+    }
+
+    /**
+     * Develop one block in the buffer and write it to the next board
+     *
+     * @param left      first word of the block in a row
+     * @param top       first row of the block
+     * @param depth     generations
+     * @param nextTiles tile summary of the next board
+     * @return births of the last generation in the upper, deaths in the lower 32 bits
+     */
+    private long developBlock(int left, int top, int depth, DensityTiles nextTiles) {
+        int rows = Math.min(BLOCK_ROWS, yLength - top);
+        int words = Math.min(BLOCK_WORDS, wordsPerRow - left);
+        int bufferRows = rows + 2 * depth;
+        // Buffer word c holds the cells from (left - 1 + c) * 64, buffer row r is board row top - depth + r
+        for (int c = 0; c < BUFFER_WORDS; c++) {
+            columnMask[c] = cellMask(((long) left - 1 + c) << 6);
+        }
+        for (int r = 0; r < bufferRows; r++) {
+            for (int c = 0; c < BUFFER_WORDS; c++) {
+                buffer[r * BUFFER_WORDS + c] = readCells(top - depth + r, ((long) left - 1 + c) << 6);
+            }
+        }
+
+        long[] current = buffer;
+        long[] developed = scratch;
+        int born = 0;
+        int died = 0;
+        for (int generation = 1; generation <= depth; generation++) {
+            // Rows next to the buffer edge become invalid, they are not developed any more
+            for (int r = generation; r < bufferRows - generation; r++) {
+                int y = top - depth + r;
+                boolean outside = !torus && (y < 0 || y >= yLength);
+                boolean last = generation == depth && r >= depth && r < depth + rows;
+                for (int c = 0; c < BUFFER_WORDS; c++) {
+                    int index = r * BUFFER_WORDS + c;
+                    long now = outside ? 0 : step(current, index, c) & columnMask[c];
+                    developed[index] = now;
+                    if (last && c >= 1 && c <= words) {
+                        long old = current[index];
+                        long mask = left + c - 1 == wordsPerRow - 1 ? lastWordMask : -1L;
+                        born += Long.bitCount(now & ~old & mask);
+                        died += Long.bitCount(old & ~now & mask);
+                    }
+                }
+            }
+            long[] swap = current;
+            current = developed;
+            developed = swap;
+        }
+
+        // Write back the block itself
+        for (int r = 0; r < rows; r++) {
+            int y = top + r;
+            for (int c = 1; c <= words; c++) {
+                int word = left + c - 1;
+                long now = current[(depth + r) * BUFFER_WORDS + c];
+                if (word == wordsPerRow - 1) {
+                    now &= lastWordMask;
+                }
+                next[y * wordsPerRow + word] = now;
+                if (now != 0) {
+                    nextTiles.addWord(word << 6, y, now);
+                }
+            }
+        }
+        return (long) born << 32 | (died & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Develop 64 cells of the buffer by one generation
+     *
+     * @param buffer buffer
+     * @param index  index of the word
+     * @param c      column of the word in the buffer
+     * @return next generation of the 64 cells
+     */
+    private static long step(long[] buffer, int index, int c) {
+        int above = index - BUFFER_WORDS;
+        int below = index + BUFFER_WORDS;
+        // Bit-sliced sum of the eight neighbours with an adder tree (count mod 8, 8 neighbours = 0 = dead)
+        long a = west(buffer, above, c);
+        long b = buffer[above];
+        long d = east(buffer, above, c);
+        long e = west(buffer, index, c);
+        long f = east(buffer, index, c);
+        long g = west(buffer, below, c);
+        long h = buffer[below];
+        long i = east(buffer, below, c);
+        long ones1 = a ^ b ^ d;
+        long twos1 = a & b | d & (a ^ b);
+        long ones2 = e ^ f ^ g;
+        long twos2 = e & f | g & (e ^ f);
+        long ones3 = h ^ i;
+        long twos3 = h & i;
+        long s0 = ones1 ^ ones2 ^ ones3;
+        long twos4 = ones1 & ones2 | ones3 & (ones1 ^ ones2);
+        long s1 = twos1 ^ twos2 ^ twos3 ^ twos4;
+        long s2 = twos1 & twos2 ^ twos3 & twos4 ^ (twos1 ^ twos2) & (twos3 ^ twos4);
+        // 3 neighbours: born or stays alive, 2 neighbours: no change
+        return s1 & ~s2 & (s0 | buffer[index]);
+    }
+
+    /**
+     * Get left neighbours of 64 buffer cells (bit x = cell x - 1, outside of the buffer dead)
+     *
+     * @param buffer buffer
+     * @param index  index of the word
+     * @param c      column of the word in the buffer
+     * @return neighbour cells
+     */
+    private static long west(long[] buffer, int index, int c) {
+        return buffer[index] << 1 | (c > 0 ? buffer[index - 1] >>> 63 : 0);
+    }
+
+    /**
+     * Get right neighbours of 64 buffer cells (bit x = cell x + 1, outside of the buffer dead)
+     *
+     * @param buffer buffer
+     * @param index  index of the word
+     * @param c      column of the word in the buffer
+     * @return neighbour cells
+     */
+    private static long east(long[] buffer, int index, int c) {
+        return buffer[index] >>> 1 | (c < BUFFER_WORDS - 1 ? buffer[index + 1] << 63 : 0);
+    }
+
+    /**
+     * Get valid cells of 64 cells starting at a column (all on a torus, only the ones on the board at a hard limit)
+     *
+     * @param x first column, may be outside of the board
+     * @return mask, bit i = cell x + i
+     */
+    private long cellMask(long x) {
+        if (torus) {
+            return -1L;
+        }
+        long mask = 0;
+        for (int i = 0; i < 64; i++) {
+            if (x + i >= 0 && x + i < xLength) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Read 64 cells of a row starting at a column, coordinates outside of the board wrap around on a torus
+     * and are dead at a hard limit
+     *
+     * @param y row, may be outside of the board
+     * @param x first column, may be outside of the board
+     * @return cells, bit i = cell x + i
+     */
+    private long readCells(int y, long x) {
+        if (!torus && (y < 0 || y >= yLength)) {
+            return 0;
+        }
+        long row = (long) Math.floorMod(y, yLength) * wordsPerRow << 6;
+        if (x >= 0 && x + 64 <= xLength) {
+            return Bits.read(cells, row + x);
+        }
+        // Crosses an edge (or the board is narrower than 64 cells)
+        long result = 0;
+        int i = 0;
+        while (i < 64) {
+            long column = x + i;
+            if (torus) {
+                column = Math.floorMod(column, (long) xLength);
+            } else if (column < 0) {
+                i += (int) Math.min(64 - i, -column);
+                continue;
+            } else if (column >= xLength) {
+                break;
+            }
+            int n = (int) Math.min(64 - i, xLength - column);
+            long bits = Bits.read(cells, row + column);
+            if (n < 64) {
+                bits &= (1L << n) - 1;
+            }
+            result |= bits << i;
+            i += n;
+        }
+        return result;
+    }
+
+    /**
+     * Get number of cells born in the last developed generation
+     *
+     * @return births
+     */
+    @Override
+    public int getBirths() {
+        return births;
+    }
+
+    /**
+     * Get number of cells died in the last developed generation
+     *
+     * @return deaths
+     */
+    @Override
+    public int getDeaths() {
+        return deaths;
+    }
+
+    /**
+     * Toggle cell (living cell dies, dead cell is born)
+     *
+     * @param x x coordinate
+     * @param y y coordinate
+     */
+    @Override
+    public void toggleCell(int x, int y) {
+        int index = y * wordsPerRow + (x >>> 6);
+        this.cells[index] ^= 1L << x;
+        tiles.add(x, y, (cells[index] >>> x & 1) != 0 ? 1 : -1);
+        listeners.fire(EventTypes.UPDATED_BOARD, x, y, 1, 1);
+    }
+
+    /**
+     * Set many cells alive or dead, observers are notified once (cells outside of the board are skipped)
+     *
+     * @param batch cells with their new state
+     */
+    @Override
+    public void setCells(CellBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            int x = batch.getX(i);
+            int y = batch.getY(i);
+            if (x < 0 || y < 0 || x >= this.xLength || y >= this.yLength) {
+                continue;
+            }
+            int index = y * wordsPerRow + (x >>> 6);
+            boolean alive = (cells[index] >>> x & 1) != 0;
+            if (alive == batch.isAlive(i)) {
+                continue;
+            }
+            this.cells[index] ^= 1L << x;
+            tiles.add(x, y, batch.isAlive(i) ? 1 : -1);
+        }
+        if (batch.size() > 0) {
+            listeners.fire(EventTypes.UPDATED_BOARD, batch.getMinX(), batch.getMinY(), batch.getWidth(), batch.getHeight());
+        }
+    }
+
+    /**
+     * Add listener
+     *
+     * @param listener listener
+     * @param executor executor delivering events
+     */
+    @Override
+    public void addListener(ModelListener listener, Executor executor) {
+        listeners.add(listener, executor);
+    }
+
+    /**
+     * Remove listener
+     *
+     * @param listener listener
+     */
+    @Override
+    public void removeListener(ModelListener listener) {
+        listeners.remove(listener);
+    }
+}
@@ -1,18 +1,22 @@
 package model;
 
-import view.View;
-
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Observable;
+import java.util.concurrent.Executor;
 
 /**
  * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
  */
-public class BooleanModel extends Observable implements Buildable {
+public class BooleanModel implements Buildable {
 
     private boolean[][] board;
+    // Kept separately, a board without rows has no row to take the width from
+    private int xLength;
     private boolean torus;
+    private DensityTiles tiles;
+    private int births;
+    private int deaths;
+    private final ModelListeners listeners = new ModelListeners(this);
 
     /**
      * Constructor (empty board)
@@ -22,6 +26,8 @@ public class BooleanModel extends Observable implements Buildable {
      */
     public BooleanModel(int xLength, int yLength) {
         this.board = new boolean[yLength][xLength];
+        this.xLength = xLength;
+        this.tiles = new DensityTiles(xLength, yLength);
     }
 
     /**
@@ -37,6 +43,27 @@ public class BooleanModel extends Observable implements Buildable {
 
     }
 
+    /**
+     * Constructor (board copied from a snapshot, e.g. of another model; each row is unpacked from words)
+     *
+     * @param snapshot board
+     */
+    public BooleanModel(Snapshot snapshot) {
+        int xLength = snapshot.getXLength();
+        this.board = new boolean[snapshot.getYLength()][xLength];
+        this.xLength = xLength;
+        long[] words = snapshot.getWords();
+        for (int w = 0; w < words.length; w++) {
+            long word = words[w];
+            while (word != 0) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(word);
+                this.board[i / xLength][i % xLength] = true;
+                word &= word - 1;
+            }
+        }
+        this.tiles = DensityTiles.of(snapshot);
+    }
+
     /**
      * Initialize board with living cells
      *
@@ -47,9 +74,8 @@ public class BooleanModel extends Observable implements Buildable {
         for (Integer[] array : positions) {
             this.board[array[1]][array[0]] = true;
         }
-        System.out.println("--Boolean INIT");
-        setChanged();
-        notifyObservers(new ModelEvent(EventTypes.CHANGE_SIZE));
+        this.tiles = DensityTiles.of(snapshot());
+        listeners.fire(EventTypes.CHANGE_SIZE);
     }
 
     /**
@@ -63,21 +89,17 @@ public class BooleanModel extends Observable implements Buildable {
         if (board != null) {
             boolean[][] tmpOldBoard = board;
             this.board = new boolean[y][x];
-            int minX = Math.min(tmpOldBoard[0].length, x);
+            this.xLength = x;
             int minY = Math.min(tmpOldBoard.length, y);
-            for (int tmpX = 0; tmpX < minX; tmpX++) {
-                for (int tmpY = 0; tmpY < minY; tmpY++) {
-                    if (tmpOldBoard[tmpY][tmpX]) {
-                        this.board[tmpY][tmpX] = tmpOldBoard[tmpY][tmpX];
-                    }
-                }
+            // Copy kept part of every row at once
+            for (int tmpY = 0; tmpY < minY; tmpY++) {
+                System.arraycopy(tmpOldBoard[tmpY], 0, this.board[tmpY], 0, Math.min(tmpOldBoard[tmpY].length, x));
             }
         } else {
             this.board = new boolean[getYLength()][getXLength()];
         }
-        System.out.println("--Boolean SET:" + getXLength() + "," + getYLength());
-        setChanged();
-        notifyObservers(new ModelEvent(EventTypes.CHANGE_SIZE));
+        this.tiles = DensityTiles.of(snapshot());
+        listeners.fire(EventTypes.CHANGE_SIZE);
     }
 
     /**
@@ -86,8 +108,8 @@ public class BooleanModel extends Observable implements Buildable {
     @Override
     public void resetBoard() {
         this.board = new boolean[getYLength()][getXLength()];
-        setChanged();
-        notifyObservers(new ModelEvent(EventTypes.RESET_BOARD));
+        this.tiles = new DensityTiles(getXLength(), getYLength());
+        listeners.fire(EventTypes.RESET_BOARD);
     }
 
     /**
@@ -108,6 +130,65 @@ public class BooleanModel extends Observable implements Buildable {
         return positions;
     }
 
+    /**
+     * Get copy of current board
+     *
+     * @return snapshot of living cells
+     */
+    @Override
+    public Snapshot snapshot() {
+        int xLength = getXLength();
+        long[] words = new long[Snapshot.wordCount(xLength, getYLength())];
+        for (int y = 0; y < getYLength(); y++) {
+            boolean[] row = this.board[y];
+            int offset = y * xLength;
+            for (int x = 0; x < xLength; x++) {
+                if (row[x]) {
+                    int i = offset + x;
+                    words[i >>> 6] |= 1L << i;
+                }
+            }
+        }
+        return new Snapshot(xLength, getYLength(), words);
+    }
+
+    /**
+     * Get copy of a region of the current board (cells outside of the board are dead)
+     *
+     * @param x      left column of region
+     * @param y      top row of region
+     * @param width  width of region
+     * @param height height of region
+     * @return snapshot of the region, coordinates relative to (x,y)
+     */
+    @Override
+    public Snapshot snapshot(int x, int y, int width, int height) {
+        long[] words = new long[Snapshot.wordCount(width, height)];
+        int fromX = Math.max(x, 0);
+        int toX = Math.min(x + width, getXLength());
+        for (int row = Math.max(y, 0); row < Math.min(y + height, getYLength()); row++) {
+            boolean[] cells = this.board[row];
+            int offset = (row - y) * width - x;
+            for (int column = fromX; column < toX; column++) {
+                if (cells[column]) {
+                    int i = offset + column;
+                    words[i >>> 6] |= 1L << i;
+                }
+            }
+        }
+        return new Snapshot(width, height, words);
+    }
+
+    /**
+     * Get population of 8x8 tiles of the current board
+     *
+     * @return tile summary
+     */
+    @Override
+    public DensityTiles getDensityTiles() {
+        return tiles;
+    }
+
     /**
      * Get board width
      *
@@ -115,7 +196,7 @@ public class BooleanModel extends Observable implements Buildable {
      */
     @Override
     public int getXLength() {
-        return this.board[0].length;
+        return this.xLength;
     }
 
     /**
@@ -138,12 +219,25 @@ public class BooleanModel extends Observable implements Buildable {
         this.torus = torus;
     }
 
+    /**
+     * Get surface mode
+     *
+     * @return true = torus, false = hard limit
+     */
+    @Override
+    public boolean isTorus() {
+        return torus;
+    }
+
     /**
      * Develop current generation to the next one
      */
     @Override
     public void developGeneration() {
         boolean[][] nextGenerationBoard = cloneGeneration(this.board);
+        DensityTiles nextTiles = new DensityTiles(getXLength(), getYLength());
+        int born = 0;
+        int died = 0;
 
         // Decide the fate of each cell
         for (int y = 0; y < getYLength(); ++y) {
@@ -161,12 +255,44 @@ public class BooleanModel extends Observable implements Buildable {
                 if (numNeighbors == 3) {
                     nextGenerationBoard[y][x] = true;
                 }
+                if (nextGenerationBoard[y][x]) {
+                    nextTiles.add(x, y, 1);
+                }
+                if (nextGenerationBoard[y][x] != this.board[y][x]) {
+                    if (nextGenerationBoard[y][x]) {
+                        born++;
+                    } else {
+                        died++;
+                    }
+                }
             }
         }
 
         this.board = nextGenerationBoard;
-        this.setChanged();
-        notifyObservers(new ModelEvent(EventTypes.UPDATED_BOARD));
+        this.tiles = nextTiles;
+        this.births = born;
+        this.deaths = died;
+        listeners.fire(EventTypes.UPDATED_BOARD);
+    }
+
+    /**
+     * Get number of cells born in the last developed generation
+     *
+     * @return births
+     */
+    @Override
+    public int getBirths() {
+        return births;
+    }
+
+    /**
+     * Get number of cells died in the last developed generation
+     *
+     * @return deaths
+     */
+    @Override
+    public int getDeaths() {
+        return deaths;
     }
 
     /**
@@ -272,28 +398,50 @@ public class BooleanModel extends Observable implements Buildable {
     @Override
     public void toggleCell(int x, int y) {
         this.board[y][x] = !this.board[y][x];
-        setChanged();
-        notifyObservers(new ModelEvent(EventTypes.UPDATED_BOARD));
+        tiles.add(x, y, this.board[y][x] ? 1 : -1);
+        listeners.fire(EventTypes.UPDATED_BOARD, x, y, 1, 1);
+    }
+
+    /**
+     * Set many cells alive or dead, observers are notified once (cells outside of the board are skipped)
+     *
+     * @param batch cells with their new state
+     */
+    @Override
+    public void setCells(CellBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            int x = batch.getX(i);
+            int y = batch.getY(i);
+            if (x < 0 || y < 0 || x >= getXLength() || y >= getYLength() || this.board[y][x] == batch.isAlive(i)) {
+                continue;
+            }
+            this.board[y][x] = batch.isAlive(i);
+            tiles.add(x, y, batch.isAlive(i) ? 1 : -1);
+        }
+        if (batch.size() > 0) {
+            listeners.fire(EventTypes.UPDATED_BOARD, batch.getMinX(), batch.getMinY(), batch.getWidth(), batch.getHeight());
+        }
     }
 
     /**
-     * Add observer
+     * Add listener
      *
-     * @param view instance of View
+     * @param listener listener
+     * @param executor executor delivering events
      */
     @Override
-    public void addObserver(View view) {
-        super.addObserver(view);
+    public void addListener(ModelListener listener, Executor executor) {
+        listeners.add(listener, executor);
     }
 
     /**
-     * Remove observer
+     * Remove listener
      *
-     * @param view instance of View
+     * @param listener listener
      */
     @Override
-    public void deleteObserver(View view) {
-        super.deleteObserver(view);
+    public void removeListener(ModelListener listener) {
+        listeners.remove(listener);
     }
 
 }
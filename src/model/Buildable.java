@@ -1,8 +1,7 @@
 package model;
 
-import view.View;
-
 import java.util.ArrayList;
+import java.util.concurrent.Executor;
 
 /**
  * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
@@ -36,6 +35,31 @@ public interface Buildable {
      */
     ArrayList<Integer[]> getPositions();
 
+    /**
+     * Get copy of current board
+     *
+     * @return snapshot of living cells
+     */
+    Snapshot snapshot();
+
+    /**
+     * Get copy of a region of the current board (cells outside of the board are dead)
+     *
+     * @param x      left column of region
+     * @param y      top row of region
+     * @param width  width of region
+     * @param height height of region
+     * @return snapshot of the region, coordinates relative to (x,y)
+     */
+    Snapshot snapshot(int x, int y, int width, int height);
+
+    /**
+     * Get population of 8x8 tiles of the current board
+     *
+     * @return tile summary (kept up to date by the model, do not modify)
+     */
+    DensityTiles getDensityTiles();
+
     /**
      * Get board width
      *
@@ -57,11 +81,44 @@ public interface Buildable {
      */
     void setTorus(boolean torus);
 
+    /**
+     * Get surface mode
+     *
+     * @return true = torus, false = hard limit
+     */
+    boolean isTorus();
+
     /**
      * Develop current generation to the next one
      */
     void developGeneration();
 
+    /**
+     * Develop several generations, observers may be notified only once
+     * (engines may skip storing the generations in between, births and deaths refer to the last generation)
+     *
+     * @param generations number of generations
+     */
+    default void developGenerations(int generations) {
+        for (int i = 0; i < generations; i++) {
+            developGeneration();
+        }
+    }
+
+    /**
+     * Get number of cells born in the last developed generation
+     *
+     * @return births
+     */
+    int getBirths();
+
+    /**
+     * Get number of cells died in the last developed generation
+     *
+     * @return deaths
+     */
+    int getDeaths();
+
     /**
      * Toggle cell (living cell dies, dead cell is born)
      *
@@ -71,16 +128,24 @@ public interface Buildable {
     void toggleCell(int x, int y);
 
     /**
-     * Add observer
+     * Set many cells alive or dead, observers are notified once (cells outside of the board are skipped)
+     *
+     * @param batch cells with their new state
+     */
+    void setCells(CellBatch batch);
+
+    /**
+     * Add listener, events fired before a delivery are merged into it
      *
-     * @param view instance of View
+     * @param listener listener
+     * @param executor executor delivering events (e.g. Runnable::run to deliver on the firing thread)
      */
-    void addObserver(View view);
+    void addListener(ModelListener listener, Executor executor);
 
     /**
-     * Remove observer
+     * Remove listener
      *
-     * @param view instance of View
+     * @param listener listener
      */
-    void deleteObserver(View view);
+    void removeListener(ModelListener listener);
 }
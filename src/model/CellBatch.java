@@ -0,0 +1,127 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Cells to set alive or dead in one go (see {@link Buildable#setCells(CellBatch)}), with their bounding rectangle
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public class CellBatch {
+    // x, y per cell
+    private int[] coordinates = new int[64];
+    private boolean[] alive = new boolean[32];
+    private int size;
+    private int minX, minY, maxX, maxY;
+
+    /**
+     * Add cell (a later entry for the same cell wins)
+     *
+     * @param x     x coordinate
+     * @param y     y coordinate
+     * @param alive true = set alive, false = set dead
+     */
+    public void set(int x, int y, boolean alive) {
+        if (size == this.alive.length) {
+            this.coordinates = Arrays.copyOf(coordinates, size * 4);
+            this.alive = Arrays.copyOf(this.alive, size * 2);
+        }
+        if (size == 0) {
+            this.minX = x;
+            this.minY = y;
+            this.maxX = x;
+            this.maxY = y;
+        } else {
+            this.minX = Math.min(minX, x);
+            this.minY = Math.min(minY, y);
+            this.maxX = Math.max(maxX, x);
+            this.maxY = Math.max(maxY, y);
+        }
+        coordinates[2 * size] = x;
+        coordinates[2 * size + 1] = y;
+        this.alive[size] = alive;
+        size++;
+    }
+
+    /**
+     * Remove all cells (storage is kept for reuse)
+     */
+    public void clear() {
+        this.size = 0;
+    }
+
+    /**
+     * Get number of cells
+     *
+     * @return number of cells
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get x coordinate of a cell
+     *
+     * @param i index of cell
+     * @return x coordinate
+     */
+    public int getX(int i) {
+        return coordinates[2 * i];
+    }
+
+    /**
+     * Get y coordinate of a cell
+     *
+     * @param i index of cell
+     * @return y coordinate
+     */
+    public int getY(int i) {
+        return coordinates[2 * i + 1];
+    }
+
+    /**
+     * Get new state of a cell
+     *
+     * @param i index of cell
+     * @return true = alive, false = dead
+     */
+    public boolean isAlive(int i) {
+        return alive[i];
+    }
+
+    /**
+     * Get left column of the bounding rectangle
+     *
+     * @return x coordinate
+     */
+    public int getMinX() {
+        return minX;
+    }
+
+    /**
+     * Get top row of the bounding rectangle
+     *
+     * @return y coordinate
+     */
+    public int getMinY() {
+        return minY;
+    }
+
+    /**
+     * Get width of the bounding rectangle
+     *
+     * @return number of columns, 0 if empty
+     */
+    public int getWidth() {
+        return size == 0 ? 0 : maxX - minX + 1;
+    }
+
+    /**
+     * Get height of the bounding rectangle
+     *
+     * @return number of rows, 0 if empty
+     */
+    public int getHeight() {
+        return size == 0 ? 0 : maxY - minY + 1;
+    }
+}
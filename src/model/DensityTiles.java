@@ -0,0 +1,153 @@
+package model;
+
+/**
+ * Population of each 8x8 tile of a board, maintained by the models for zoomed out display
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public class DensityTiles {
+    public static final int TILE_SHIFT = 3;
+    public static final int TILE_SIZE = 1 << TILE_SHIFT;
+
+    private final int xLength;
+    private final int yLength;
+    private final int tilesX;
+    private final int tilesY;
+    private final int[] counts;
+    private int population;
+
+    /**
+     * Constructor (empty board)
+     *
+     * @param xLength width of board
+     * @param yLength height of board
+     */
+    public DensityTiles(int xLength, int yLength) {
+        this.xLength = xLength;
+        this.yLength = yLength;
+        this.tilesX = (xLength + TILE_SIZE - 1) >> TILE_SHIFT;
+        this.tilesY = (yLength + TILE_SIZE - 1) >> TILE_SHIFT;
+        this.counts = new int[tilesX * tilesY];
+    }
+
+    /**
+     * Get copy (e.g. to update tiles of a board while the old ones may still be displayed)
+     *
+     * @return independent copy
+     */
+    public DensityTiles copy() {
+        DensityTiles copy = new DensityTiles(xLength, yLength);
+        System.arraycopy(counts, 0, copy.counts, 0, counts.length);
+        copy.population = population;
+        return copy;
+    }
+
+    /**
+     * Count living cells of a snapshot
+     *
+     * @param snapshot board
+     * @return tiles of the board
+     */
+    public static DensityTiles of(Snapshot snapshot) {
+        int xLength = snapshot.getXLength();
+        DensityTiles tiles = new DensityTiles(xLength, snapshot.getYLength());
+        long[] words = snapshot.getWords();
+        for (int w = 0; w < words.length; w++) {
+            long word = words[w];
+            while (word != 0) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(word);
+                tiles.add(i % xLength, i / xLength, 1);
+                word &= word - 1;
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * Add cells to the tile of a cell
+     *
+     * @param x     x coordinate of cell
+     * @param y     y coordinate of cell
+     * @param delta 1 = cell born, -1 = cell died
+     */
+    public void add(int x, int y, int delta) {
+        counts[(y >> TILE_SHIFT) * tilesX + (x >> TILE_SHIFT)] += delta;
+        population += delta;
+    }
+
+    /**
+     * Add 64 living cells of a row (faster than adding cells one by one)
+     *
+     * @param x    x coordinate of the first cell (multiple of 64)
+     * @param y    y coordinate
+     * @param bits living cells, bit i = cell x + i
+     */
+    public void addWord(int x, int y, long bits) {
+        int first = (y >> TILE_SHIFT) * tilesX + (x >> TILE_SHIFT);
+        for (int tile = 0; bits != 0; tile++) {
+            int count = Long.bitCount(bits & ((1L << TILE_SIZE) - 1));
+            counts[first + tile] += count;
+            population += count;
+            bits >>>= TILE_SIZE;
+        }
+    }
+
+    /**
+     * Get living cells of a tile
+     *
+     * @param tileX tile column
+     * @param tileY tile row
+     * @return population of tile, 0 outside of the board
+     */
+    public int getCount(int tileX, int tileY) {
+        if (tileX < 0 || tileY < 0 || tileX >= tilesX || tileY >= tilesY) {
+            return 0;
+        }
+        return counts[tileY * tilesX + tileX];
+    }
+
+    /**
+     * Get number of tile columns
+     *
+     * @return tiles per row
+     */
+    public int getTilesX() {
+        return tilesX;
+    }
+
+    /**
+     * Get number of tile rows
+     *
+     * @return tiles per column
+     */
+    public int getTilesY() {
+        return tilesY;
+    }
+
+    /**
+     * Get board width
+     *
+     * @return width of board (x length)
+     */
+    public int getXLength() {
+        return xLength;
+    }
+
+    /**
+     * Get board height
+     *
+     * @return height of board (y length)
+     */
+    public int getYLength() {
+        return yLength;
+    }
+
+    /**
+     * Get living cells of the whole board
+     *
+     * @return population
+     */
+    public int getPopulation() {
+        return population;
+    }
+}
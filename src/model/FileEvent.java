@@ -0,0 +1,32 @@
+package model;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for reading or writing a pattern file
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+@Name("gameoflife.File")
+@Label("Pattern File")
+@Category("Game of Life")
+@Description("Pattern file read or written by InputOutput")
+public class FileEvent extends Event {
+    @Label("Operation")
+    public String operation;
+
+    @Label("Path")
+    public String path;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Living Cells")
+    public long cells;
+}
@@ -1,13 +1,17 @@
 package model;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -15,6 +19,48 @@ import java.util.stream.Stream;
  * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
  */
 public class InputOutput {
+    /**
+     * Callback for long running reads and writes
+     */
+    public interface Progress {
+        /**
+         * Report progress
+         *
+         * @param done  work done so far
+         * @param total total work
+         * @return false to cancel the operation
+         */
+        boolean update(long done, long total);
+    }
+
+    /**
+     * Receiver of living cells read from a file
+     */
+    public interface Cells {
+        /**
+         * Living cell
+         *
+         * @param x column
+         * @param y row
+         * @throws IOException error while passing the cell on
+         */
+        void cell(int x, int y) throws IOException;
+    }
+
+    /**
+     * Source of board rows written to a file
+     */
+    public interface Rows {
+        /**
+         * Fill one row
+         *
+         * @param y   row, rows are read top to bottom
+         * @param row words of the row (bit x of the row = column x)
+         * @throws IOException error while getting the row
+         */
+        void read(int y, long[] row) throws IOException;
+    }
+
     /**
      * Read and process file
      *
@@ -22,6 +68,8 @@ public class InputOutput {
      * @return Object - width, height, living cells
      */
     public static Object[] readFile(String filePath) {
+        FileEvent event = new FileEvent();
+        event.begin();
         Charset charset = Charset.forName("UTF-8");
         List<String> allLines = new ArrayList<>();
 
@@ -46,6 +94,10 @@ public class InputOutput {
             positions.add(new Integer[]{Integer.parseInt(allLines.get(i).split(",")[0]), Integer.parseInt(allLines.get(i).split(",")[1])});
         }
 
+        event.end();
+        if (event.shouldCommit()) {
+            commit(event, "read", Paths.get(filePath), positions.size());
+        }
         return new Object[]{xLength, yLength, positions};
     }
 
@@ -79,16 +131,267 @@ public class InputOutput {
      * @throws IOException error while writing file
      */
     public static void createFile(Buildable model, String outputPath) throws IOException {
+        FileEvent event = new FileEvent();
+        event.begin();
         BufferedWriter bw = new BufferedWriter(new FileWriter(outputPath));
         bw.write("x=" + model.getXLength());
         bw.newLine();
         bw.write("y=" + model.getYLength());
         bw.newLine();
 
-        for (Integer[] cell : model.getPositions()) {
+        ArrayList<Integer[]> positions = model.getPositions();
+        for (Integer[] cell : positions) {
             bw.write(cell[0] + "," + cell[1]);
             bw.newLine();
         }
         bw.close();
+        event.end();
+        if (event.shouldCommit()) {
+            commit(event, "write", Paths.get(outputPath), positions.size());
+        }
+    }
+
+    /**
+     * Write board size and living cells of a snapshot to file
+     * (written to a temporary file first, so a cancelled write leaves the old file untouched)
+     *
+     * @param snapshot   board to write
+     * @param outputPath specified output path
+     * @param progress   progress callback (cells written, population)
+     * @throws IOException error while writing file
+     */
+    public static void createFile(Snapshot snapshot, String outputPath, Progress progress) throws IOException {
+        FileEvent event = new FileEvent();
+        event.begin();
+        Path target = Paths.get(outputPath);
+        Path tmp = Paths.get(outputPath + ".part");
+        long total = snapshot.getPopulation();
+        long done = 0;
+        long[] words = snapshot.getWords();
+        int xLength = snapshot.getXLength();
+        try (BufferedWriter bw = Files.newBufferedWriter(tmp, Charset.forName("UTF-8"))) {
+            bw.write("x=" + xLength);
+            bw.newLine();
+            bw.write("y=" + snapshot.getYLength());
+            bw.newLine();
+            for (int w = 0; w < words.length; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    int i = (w << 6) + Long.numberOfTrailingZeros(word);
+                    bw.write(i % xLength + "," + i / xLength);
+                    bw.newLine();
+                    word &= word - 1;
+                    // Report every 4096 cells
+                    if ((++done & 0xFFF) == 0 && !progress.update(done, total)) {
+                        throw new CancellationException("Writing " + outputPath + " cancelled");
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        event.end();
+        if (event.shouldCommit()) {
+            commit(event, "write", target, total);
+        }
+        progress.update(total, total);
+    }
+
+    /**
+     * Write board size and living cells row by row, without holding the whole board
+     * (written to a temporary file first, so a cancelled write leaves the old file untouched)
+     *
+     * @param xLength    width of board
+     * @param yLength    height of board
+     * @param rows       source of the rows
+     * @param outputPath specified output path
+     * @param progress   progress callback (rows written, height)
+     * @return number of living cells written
+     * @throws IOException error while writing file or getting a row
+     */
+    public static long createFile(int xLength, int yLength, Rows rows, String outputPath, Progress progress) throws IOException {
+        FileEvent event = new FileEvent();
+        event.begin();
+        Path target = Paths.get(outputPath);
+        Path tmp = Paths.get(outputPath + ".part");
+        long[] row = new long[(xLength + 63) >>> 6];
+        long population = 0;
+        try (BufferedWriter bw = Files.newBufferedWriter(tmp, Charset.forName("UTF-8"))) {
+            bw.write("x=" + xLength);
+            bw.newLine();
+            bw.write("y=" + yLength);
+            bw.newLine();
+            for (int y = 0; y < yLength; y++) {
+                rows.read(y, row);
+                // Bits beyond the width are no cells
+                row[row.length - 1] &= -1L >>> (-xLength & 63);
+                for (int w = 0; w < row.length; w++) {
+                    long word = row[w];
+                    while (word != 0) {
+                        bw.write(((w << 6) + Long.numberOfTrailingZeros(word)) + "," + y);
+                        bw.newLine();
+                        population++;
+                        word &= word - 1;
+                    }
+                }
+                if (!progress.update(y + 1, yLength)) {
+                    throw new CancellationException("Writing " + outputPath + " cancelled");
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        event.end();
+        if (event.shouldCommit()) {
+            commit(event, "write", target, population);
+        }
+        return population;
+    }
+
+    /**
+     * Read board size of a file
+     *
+     * @param filePath path to file
+     * @return width and height
+     * @throws IOException error while reading file or size missing
+     */
+    public static int[] readSize(String filePath) throws IOException {
+        int[] size = {-1, -1};
+        try (BufferedReader br = Files.newBufferedReader(Paths.get(filePath), Charset.forName("UTF-8"))) {
+            String line;
+            while (size[1] < 0 && (line = br.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    size[size[0] < 0 ? 0 : 1] = Integer.parseInt(line.substring(2));
+                }
+            }
+        }
+        if (size[1] < 0) {
+            throw new IOException("Missing board size in " + filePath);
+        }
+        return size;
+    }
+
+    /**
+     * Read living cells of a file one by one, without holding the whole board (cells in file order)
+     *
+     * @param filePath path to file
+     * @param cells    receiver of the cells
+     * @param progress progress callback (bytes read, file size)
+     * @return number of living cells read
+     * @throws IOException error while reading file or passing a cell on
+     */
+    public static long readCells(String filePath, Cells cells, Progress progress) throws IOException {
+        FileEvent event = new FileEvent();
+        event.begin();
+        Path path = Paths.get(filePath);
+        long total = Files.size(path);
+        long done = 0;
+        long population = 0;
+        try (BufferedReader br = Files.newBufferedReader(path, Charset.forName("UTF-8"))) {
+            String line;
+            int lines = 0;
+            int header = 2;
+            while ((line = br.readLine()) != null) {
+                done += line.length() + 1;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (header > 0) {
+                    // Board size
+                    header--;
+                } else {
+                    int comma = line.indexOf(',');
+                    cells.cell(Integer.parseInt(line.substring(0, comma)), Integer.parseInt(line.substring(comma + 1)));
+                    population++;
+                }
+                // Report every 4096 lines
+                if ((++lines & 0xFFF) == 0 && !progress.update(done, total)) {
+                    throw new CancellationException("Reading " + filePath + " cancelled");
+                }
+            }
+        }
+        progress.update(total, total);
+        event.end();
+        if (event.shouldCommit()) {
+            commit(event, "read", path, population);
+        }
+        return population;
+    }
+
+    /**
+     * Read and process file into a snapshot
+     *
+     * @param filePath path to file
+     * @param progress progress callback (bytes read, file size)
+     * @return snapshot of the board described by the file
+     * @throws IOException error while reading file
+     */
+    public static Snapshot readSnapshot(String filePath, Progress progress) throws IOException {
+        FileEvent event = new FileEvent();
+        event.begin();
+        Path path = Paths.get(filePath);
+        long total = Files.size(path);
+        long done = 0;
+        int xLength = -1;
+        int yLength = -1;
+        long[] words = null;
+        try (BufferedReader br = Files.newBufferedReader(path, Charset.forName("UTF-8"))) {
+            String line;
+            int lines = 0;
+            while ((line = br.readLine()) != null) {
+                done += line.length() + 1;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (xLength < 0) {
+                    xLength = Integer.parseInt(line.substring(2));
+                } else if (yLength < 0) {
+                    yLength = Integer.parseInt(line.substring(2));
+                    words = new long[Snapshot.wordCount(xLength, yLength)];
+                } else {
+                    int comma = line.indexOf(',');
+                    int i = Integer.parseInt(line.substring(0, comma)) + Integer.parseInt(line.substring(comma + 1)) * xLength;
+                    words[i >>> 6] |= 1L << i;
+                }
+                // Report every 4096 lines
+                if ((++lines & 0xFFF) == 0 && !progress.update(done, total)) {
+                    throw new CancellationException("Reading " + filePath + " cancelled");
+                }
+            }
+        }
+        if (words == null) {
+            throw new IOException("Missing board size in " + filePath);
+        }
+        progress.update(total, total);
+        Snapshot snapshot = new Snapshot(xLength, yLength, words);
+        event.end();
+        if (event.shouldCommit()) {
+            commit(event, "read", path, snapshot.getPopulation());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Fill in and commit a Flight Recorder event (only called while the event is recorded)
+     *
+     * @param event     event to commit
+     * @param operation "read" or "write"
+     * @param path      path to file
+     * @param cells     number of living cells
+     */
+    private static void commit(FileEvent event, String operation, Path path, long cells) {
+        event.operation = operation;
+        event.path = path.toString();
+        event.cells = cells;
+        try {
+            event.bytes = Files.size(path);
+        } catch (IOException e) {
+            event.bytes = -1;
+        }
+        event.commit();
     }
 }
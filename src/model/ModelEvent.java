@@ -5,14 +5,32 @@ package model;
  */
 public class ModelEvent {
     private final EventTypes myEvent;
+    private final int x, y, width, height;
 
     /**
-     * Constructor
+     * Constructor (whole board changed)
      *
      * @param theEvent event type (enum)
      */
     public ModelEvent(final EventTypes theEvent) {
+        this(theEvent, 0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Constructor (only cells in a rectangle changed)
+     *
+     * @param theEvent event type (enum)
+     * @param x        left column of changed cells
+     * @param y        top row of changed cells
+     * @param width    number of columns
+     * @param height   number of rows
+     */
+    public ModelEvent(final EventTypes theEvent, int x, int y, int width, int height) {
         myEvent = theEvent;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
     }
 
     /**
@@ -23,4 +41,50 @@ public class ModelEvent {
     public EventTypes getType() {
         return myEvent;
     }
+
+    /**
+     * Get left column of changed cells
+     *
+     * @return x coordinate
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Get top row of changed cells
+     *
+     * @return y coordinate
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Get number of columns of changed cells
+     *
+     * @return width of changed rectangle
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Get number of rows of changed cells
+     *
+     * @return height of changed rectangle
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Check if the changed rectangle covers the whole board
+     *
+     * @param model changed model
+     * @return true if all cells may have changed
+     */
+    public boolean isWholeBoard(Buildable model) {
+        return x <= 0 && y <= 0 && (long) x + width >= model.getXLength() && (long) y + height >= model.getYLength();
+    }
 }
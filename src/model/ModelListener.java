@@ -0,0 +1,19 @@
+package model;
+
+/**
+ * Listener for changes of a model
+ * <p>
+ * Registered with an executor, see {@link Buildable#addListener(ModelListener, java.util.concurrent.Executor)}.
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public interface ModelListener {
+
+    /**
+     * Model changed (events of the same type that happened before delivery are merged into one)
+     *
+     * @param model changed model
+     * @param event type of change
+     */
+    void modelChanged(Buildable model, ModelEvent event);
+}
@@ -0,0 +1,145 @@
+package model;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Listeners of one model, each delivered through its own executor
+ * <p>
+ * Every listener has at most one delivery queued. Events fired while it is queued are merged into it (one bit per
+ * event type, changed rectangles are united), so a slow listener never builds up a backlog and never slows down the model.
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public class ModelListeners {
+    private static final EventTypes[] TYPES = EventTypes.values();
+    private final Buildable model;
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Listener with its executor and the events not yet delivered
+     */
+    private class Subscription implements Runnable {
+        private final ModelListener listener;
+        private final Executor executor;
+        // Guarded by this: bit per event type, rectangle containing all changed cells
+        private int pending;
+        private long left, top, right, bottom;
+
+        /**
+         * Constructor
+         *
+         * @param listener listener
+         * @param executor executor delivering events
+         */
+        Subscription(ModelListener listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+
+        /**
+         * Add event, queue a delivery if none is queued yet
+         *
+         * @param type   event type
+         * @param x      left column of changed cells
+         * @param y      top row of changed cells
+         * @param width  number of columns
+         * @param height number of rows
+         */
+        void fire(EventTypes type, int x, int y, int width, int height) {
+            boolean queue;
+            synchronized (this) {
+                queue = pending == 0;
+                if (queue) {
+                    this.left = x;
+                    this.top = y;
+                    this.right = (long) x + width;
+                    this.bottom = (long) y + height;
+                } else {
+                    this.left = Math.min(left, x);
+                    this.top = Math.min(top, y);
+                    this.right = Math.max(right, (long) x + width);
+                    this.bottom = Math.max(bottom, (long) y + height);
+                }
+                this.pending |= 1 << type.ordinal();
+            }
+            if (queue) {
+                executor.execute(this);
+            }
+        }
+
+        /**
+         * Deliver all pending events, in the order of the event types
+         */
+        @Override
+        public void run() {
+            int mask;
+            int x, y, width, height;
+            synchronized (this) {
+                mask = pending;
+                x = (int) left;
+                y = (int) top;
+                width = (int) Math.min(Integer.MAX_VALUE, right - left);
+                height = (int) Math.min(Integer.MAX_VALUE, bottom - top);
+                this.pending = 0;
+            }
+            for (EventTypes type : TYPES) {
+                if ((mask & 1 << type.ordinal()) != 0 && subscriptions.contains(this)) {
+                    listener.modelChanged(model, new ModelEvent(type, x, y, width, height));
+                }
+            }
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param model model passed to the listeners
+     */
+    public ModelListeners(Buildable model) {
+        this.model = model;
+    }
+
+    /**
+     * Add listener
+     *
+     * @param listener listener
+     * @param executor executor delivering events (e.g. Runnable::run to deliver on the firing thread)
+     */
+    public void add(ModelListener listener, Executor executor) {
+        subscriptions.add(new Subscription(listener, executor));
+    }
+
+    /**
+     * Remove listener, events already queued for it are dropped
+     *
+     * @param listener listener
+     */
+    public void remove(ModelListener listener) {
+        subscriptions.removeIf(subscription -> subscription.listener == listener);
+    }
+
+    /**
+     * Notify all listeners (whole board changed)
+     *
+     * @param type event type
+     */
+    public void fire(EventTypes type) {
+        fire(type, 0, 0, model.getXLength(), model.getYLength());
+    }
+
+    /**
+     * Notify all listeners (only cells in a rectangle changed)
+     *
+     * @param type   event type
+     * @param x      left column of changed cells
+     * @param y      top row of changed cells
+     * @param width  number of columns
+     * @param height number of rows
+     */
+    public void fire(EventTypes type, int x, int y, int width, int height) {
+        for (Subscription subscription : subscriptions) {
+            subscription.fire(type, x, y, width, height);
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package model;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of pattern files in one or more directories with a memory bounded LRU cache of parsed boards
+ * <p>
+ * Files are only parsed again when their modification time or size changed. All methods are thread safe.
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public class PatternLibrary {
+    private final long maxCacheBytes;
+    private final List<Path> directories = new ArrayList<>();
+    private final Map<Path, Entry> index = new HashMap<>();
+    private final LinkedHashMap<Path, Cached> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cacheBytes;
+
+    /**
+     * Index entry of one pattern file
+     */
+    public static class Entry {
+        private final Path path;
+        private final int xLength;
+        private final int yLength;
+        private final int population;
+        private final long lastModified;
+        private final long size;
+
+        /**
+         * Constructor
+         *
+         * @param path         normalized absolute path to file
+         * @param snapshot     parsed board
+         * @param lastModified modification time of the parsed file
+         * @param size         size of the parsed file
+         */
+        Entry(Path path, Snapshot snapshot, long lastModified, long size) {
+            this.path = path;
+            this.xLength = snapshot.getXLength();
+            this.yLength = snapshot.getYLength();
+            this.population = snapshot.getPopulation();
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+
+        /**
+         * Get path to file
+         *
+         * @return normalized absolute path
+         */
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * Get file name
+         *
+         * @return name of pattern file
+         */
+        public String getName() {
+            return path.getFileName().toString();
+        }
+
+        /**
+         * Get board width
+         *
+         * @return width of board (x length)
+         */
+        public int getXLength() {
+            return xLength;
+        }
+
+        /**
+         * Get board height
+         *
+         * @return height of board (y length)
+         */
+        public int getYLength() {
+            return yLength;
+        }
+
+        /**
+         * Get number of living cells
+         *
+         * @return population
+         */
+        public int getPopulation() {
+            return population;
+        }
+
+        /**
+         * Get file format (file extension)
+         *
+         * @return format, e.g. "txt"
+         */
+        public String getFormat() {
+            String name = getName();
+            return name.substring(name.lastIndexOf('.') + 1);
+        }
+
+        /**
+         * Get modification time of the indexed file
+         *
+         * @return time in milliseconds since epoch
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Describe entry (used as menu text)
+         *
+         * @return name, size and population
+         */
+        @Override
+        public String toString() {
+            return getName() + " (" + xLength + "x" + yLength + ", " + population + " cells)";
+        }
+    }
+
+    /**
+     * Cached board with the file state it was parsed from
+     */
+    private static class Cached {
+        private final Snapshot snapshot;
+        private final long lastModified;
+        private final long size;
+
+        /**
+         * Constructor
+         *
+         * @param snapshot     parsed board
+         * @param lastModified modification time of the parsed file
+         * @param size         size of the parsed file
+         */
+        Cached(Snapshot snapshot, long lastModified, long size) {
+            this.snapshot = snapshot;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maxCacheBytes upper bound for memory used by cached boards
+     */
+    public PatternLibrary(long maxCacheBytes) {
+        this.maxCacheBytes = maxCacheBytes;
+    }
+
+    /**
+     * Add directory to the index (all *.txt files in it)
+     *
+     * @param directory pattern directory
+     * @throws IOException error while reading directory
+     */
+    public void addDirectory(Path directory) throws IOException {
+        synchronized (this) {
+            directories.add(directory.toAbsolutePath().normalize());
+        }
+        refresh();
+    }
+
+    /**
+     * Update index: new and changed files are parsed, removed files are dropped, unchanged files are skipped
+     *
+     * @throws IOException error while reading directory
+     */
+    public void refresh() throws IOException {
+        Set<Path> files = new HashSet<>();
+        synchronized (this) {
+            for (Path directory : directories) {
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.txt")) {
+                    for (Path file : stream) {
+                        files.add(file.toAbsolutePath().normalize());
+                    }
+                }
+            }
+            // Forget deleted files
+            Iterator<Path> it = index.keySet().iterator();
+            while (it.hasNext()) {
+                Path path = it.next();
+                if (!files.contains(path) && !Files.exists(path)) {
+                    it.remove();
+                    uncache(path);
+                }
+            }
+        }
+        for (Path file : files) {
+            try {
+                if (!isIndexed(file)) {
+                    load(file, (done, total) -> true);
+                }
+            } catch (IOException | RuntimeException e) {
+                // Not a pattern file, keep it out of the index
+                synchronized (this) {
+                    index.remove(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Check if index entry of a file is up to date
+     *
+     * @param file normalized absolute path to file
+     * @return true if file did not change since it was indexed
+     * @throws IOException error while reading file attributes
+     */
+    private boolean isIndexed(Path file) throws IOException {
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        long size = Files.size(file);
+        synchronized (this) {
+            Entry entry = index.get(file);
+            return entry != null && entry.lastModified == lastModified && entry.size == size;
+        }
+    }
+
+    /**
+     * Get index entries, sorted by name
+     *
+     * @return index entries
+     */
+    public synchronized List<Entry> getEntries() {
+        List<Entry> entries = new ArrayList<>(index.values());
+        entries.sort((a, b) -> a.getName().compareToIgnoreCase(b.getName()));
+        return entries;
+    }
+
+    /**
+     * Get parsed board, from cache if the file did not change since it was parsed
+     *
+     * @param filePath path to file
+     * @return snapshot of the board described by the file
+     * @throws IOException error while reading file
+     */
+    public Snapshot load(String filePath) throws IOException {
+        return load(filePath, (done, total) -> true);
+    }
+
+    /**
+     * Get parsed board, from cache if the file did not change since it was parsed
+     *
+     * @param filePath path to file
+     * @param progress progress callback while the file is parsed (bytes read, file size), false = cancel
+     * @return snapshot of the board described by the file
+     * @throws IOException error while reading file
+     */
+    public Snapshot load(String filePath, InputOutput.Progress progress) throws IOException {
+        return load(Paths.get(filePath).toAbsolutePath().normalize(), progress);
+    }
+
+    /**
+     * Get parsed board, from cache if the file did not change since it was parsed
+     * (only files in a library directory are added to the index)
+     *
+     * @param file     normalized absolute path to file
+     * @param progress progress callback while the file is parsed
+     * @return snapshot of the board described by the file
+     * @throws IOException error while reading file
+     */
+    private Snapshot load(Path file, InputOutput.Progress progress) throws IOException {
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        long size = Files.size(file);
+        synchronized (this) {
+            Cached cached = cache.get(file);
+            if (cached != null && cached.lastModified == lastModified && cached.size == size) {
+                return cached.snapshot;
+            }
+        }
+        // Parse outside the lock, other patterns stay available meanwhile
+        Snapshot snapshot = InputOutput.readSnapshot(file.toString(), progress);
+        synchronized (this) {
+            if (isInDirectory(file)) {
+                index.put(file, new Entry(file, snapshot, lastModified, size));
+            }
+            uncache(file);
+            long bytes = bytes(snapshot);
+            if (bytes <= maxCacheBytes) {
+                cache.put(file, new Cached(snapshot, lastModified, size));
+                cacheBytes += bytes;
+                // Evict least recently used boards
+                Iterator<Map.Entry<Path, Cached>> it = cache.entrySet().iterator();
+                while (cacheBytes > maxCacheBytes && it.hasNext()) {
+                    cacheBytes -= bytes(it.next().getValue().snapshot);
+                    it.remove();
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Check if a file lies directly in one of the library directories (lock must be held)
+     *
+     * @param file normalized absolute path to file
+     * @return true if the file belongs in the index
+     */
+    private boolean isInDirectory(Path file) {
+        return directories.contains(file.getParent());
+    }
+
+    /**
+     * Remove board from cache
+     *
+     * @param file path to file
+     */
+    private void uncache(Path file) {
+        Cached old = cache.remove(file);
+        if (old != null) {
+            cacheBytes -= bytes(old.snapshot);
+        }
+    }
+
+    /**
+     * Estimate memory used by a cached board
+     *
+     * @param snapshot board
+     * @return size in bytes
+     */
+    private static long bytes(Snapshot snapshot) {
+        return 8L * snapshot.getWords().length + 64;
+    }
+}
@@ -0,0 +1,141 @@
+package model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Format of run recordings (*.golr)
+ * <p>
+ * Header: magic "GOLR", version, then varints xLength, yLength, keyframe interval.
+ * Then one frame per generation, starting with generation 0. Every keyframe interval generations the frame is a
+ * keyframe (tag 0, count, cell indices), all other frames are deltas (tag 1, births count, cell indices, deaths
+ * count, cell indices). Cell indices (x + y * xLength) are ascending and stored as varint gaps to the previous one.
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public class Recording {
+    static final byte[] MAGIC = {'G', 'O', 'L', 'R'};
+    static final int VERSION = 1;
+    static final int KEYFRAME = 0;
+    static final int DELTA = 1;
+
+    /**
+     * Write unsigned varint (7 bits per byte, least significant group first)
+     *
+     * @param out   stream
+     * @param value value (>= 0)
+     * @throws IOException error while writing
+     */
+    static void writeVarint(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Write set bits of words as count followed by gap encoded indices
+     *
+     * @param out   stream
+     * @param words packed cells
+     * @throws IOException error while writing
+     */
+    static void writeCells(OutputStream out, long[] words) throws IOException {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        writeVarint(out, count);
+        int previous = 0;
+        for (int w = 0; w < words.length; w++) {
+            long word = words[w];
+            while (word != 0) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(word);
+                writeVarint(out, i - previous);
+                previous = i;
+                word &= word - 1;
+            }
+        }
+    }
+
+    /**
+     * Read position in a recording
+     */
+    static class Cursor {
+        private final byte[] data;
+        int position;
+
+        /**
+         * Constructor
+         *
+         * @param data     recording
+         * @param position start offset
+         */
+        Cursor(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        /**
+         * Check for more data
+         *
+         * @return true if the end of the recording is not reached
+         */
+        boolean hasMore() {
+            return position < data.length;
+        }
+
+        /**
+         * Read single byte
+         *
+         * @return unsigned byte
+         */
+        int readByte() {
+            return data[position++] & 0xFF;
+        }
+
+        /**
+         * Read unsigned varint
+         *
+         * @return value
+         */
+        int readVarint() {
+            int value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = data[position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        /**
+         * Read gap encoded cells and flip them in words
+         *
+         * @param words packed cells
+         * @return number of cells flipped
+         */
+        int flipCells(long[] words) {
+            int count = readVarint();
+            int i = 0;
+            for (int n = 0; n < count; n++) {
+                i += readVarint();
+                words[i >>> 6] ^= 1L << i;
+            }
+            return count;
+        }
+
+        /**
+         * Skip gap encoded cells
+         */
+        void skipCells() {
+            int count = readVarint();
+            for (int n = 0; n < count; n++) {
+                readVarint();
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package model;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Record a run generation by generation (see {@link Recording} for the format)
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public class RecordingWriter implements Closeable {
+    private final OutputStream out;
+    private final int xLength;
+    private final int yLength;
+    private final int keyframeInterval;
+    private long[] previous;
+    private int generation;
+
+    /**
+     * Constructor, writes header and first keyframe
+     *
+     * @param outputPath       specified output path
+     * @param initial          board at generation 0
+     * @param keyframeInterval generations between keyframes (seek granularity)
+     * @throws IOException error while writing file
+     */
+    public RecordingWriter(String outputPath, Snapshot initial, int keyframeInterval) throws IOException {
+        this.out = new BufferedOutputStream(new FileOutputStream(outputPath), 1 << 16);
+        this.xLength = initial.getXLength();
+        this.yLength = initial.getYLength();
+        this.keyframeInterval = Math.max(1, keyframeInterval);
+        out.write(Recording.MAGIC);
+        out.write(Recording.VERSION);
+        Recording.writeVarint(out, xLength);
+        Recording.writeVarint(out, yLength);
+        Recording.writeVarint(out, this.keyframeInterval);
+        out.write(Recording.KEYFRAME);
+        this.previous = copy(initial.getWords());
+        Recording.writeCells(out, previous);
+    }
+
+    /**
+     * Append next generation (only births and deaths are stored, except for keyframes)
+     *
+     * @param next board of the next generation (same size as the initial board)
+     * @throws IOException error while writing file
+     */
+    public void append(Snapshot next) throws IOException {
+        if (next.getXLength() != xLength || next.getYLength() != yLength) {
+            throw new IllegalArgumentException("Board size changed during recording");
+        }
+        long[] current = copy(next.getWords());
+        generation++;
+        if (generation % keyframeInterval == 0) {
+            out.write(Recording.KEYFRAME);
+            Recording.writeCells(out, current);
+        } else {
+            long[] births = new long[current.length];
+            long[] deaths = new long[current.length];
+            for (int w = 0; w < current.length; w++) {
+                births[w] = current[w] & ~previous[w];
+                deaths[w] = previous[w] & ~current[w];
+            }
+            out.write(Recording.DELTA);
+            Recording.writeCells(out, births);
+            Recording.writeCells(out, deaths);
+        }
+        this.previous = current;
+    }
+
+    /**
+     * Get number of recorded generations after generation 0
+     *
+     * @return last recorded generation
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Flush and close file
+     *
+     * @throws IOException error while writing file
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Copy words to full board length (snapshots may omit trailing empty words)
+     *
+     * @param words packed cells
+     * @return copy with one word per 64 cells
+     */
+    private long[] copy(long[] words) {
+        long[] full = new long[Snapshot.wordCount(xLength, yLength)];
+        System.arraycopy(words, 0, full, 0, Math.min(words.length, full.length));
+        return full;
+    }
+}
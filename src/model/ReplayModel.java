@@ -0,0 +1,313 @@
+package model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+/**
+ * Play back a recorded run (see {@link Recording}) without computing generations
+ * <p>
+ * The board is read only: toggling cells, resizing and torus mode are ignored.
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public class ReplayModel implements Buildable {
+
+    private final int xLength;
+    private final int yLength;
+    private final int keyframeInterval;
+    private final byte[] data;
+    // Byte offset of each keyframe, keyframe k holds generation k * keyframeInterval
+    private final ArrayList<Integer> keyframes = new ArrayList<>();
+    private final int lastGeneration;
+    private final long[] board;
+    private final ModelListeners listeners = new ModelListeners(this);
+    private int births;
+    private int deaths;
+    private Recording.Cursor cursor;
+    private DensityTiles tiles;
+    private int generation;
+
+    /**
+     * Constructor
+     *
+     * @param filePath path to recording
+     * @throws IOException error while reading file or not a recording
+     */
+    public ReplayModel(String filePath) throws IOException {
+        this.data = Files.readAllBytes(Paths.get(filePath));
+        if (data.length < 5 || !Arrays.equals(Arrays.copyOf(data, 4), Recording.MAGIC) || data[4] != Recording.VERSION) {
+            throw new IOException(filePath + " is not a recording");
+        }
+        Recording.Cursor header = new Recording.Cursor(data, 5);
+        this.xLength = header.readVarint();
+        this.yLength = header.readVarint();
+        this.keyframeInterval = header.readVarint();
+        this.board = new long[Snapshot.wordCount(xLength, yLength)];
+
+        // Index keyframes
+        Recording.Cursor scan = new Recording.Cursor(data, header.position);
+        int frames = 0;
+        while (scan.hasMore()) {
+            int offset = scan.position;
+            if (scan.readByte() == Recording.KEYFRAME) {
+                keyframes.add(offset);
+                scan.skipCells();
+            } else {
+                scan.skipCells();
+                scan.skipCells();
+            }
+            frames++;
+        }
+        this.lastGeneration = frames - 1;
+        seek(0);
+    }
+
+    /**
+     * Jump to generation (starts at the keyframe before it and applies the deltas in between)
+     *
+     * @param target generation, clamped to the recorded range
+     */
+    public void seek(int target) {
+        target = Math.max(0, Math.min(target, lastGeneration));
+        // Continue from current position if no keyframe lies in between
+        if (cursor == null || target < generation || target / keyframeInterval > generation / keyframeInterval) {
+            int keyframe = target / keyframeInterval;
+            this.cursor = new Recording.Cursor(data, keyframes.get(keyframe));
+            this.generation = keyframe * keyframeInterval - 1;
+        }
+        while (generation < target) {
+            readFrame();
+        }
+        listeners.fire(EventTypes.UPDATED_BOARD);
+    }
+
+    /**
+     * Apply next frame to the board
+     */
+    private void readFrame() {
+        if (cursor.readByte() == Recording.KEYFRAME) {
+            long[] before = board.clone();
+            Arrays.fill(board, 0L);
+            cursor.flipCells(board);
+            this.births = 0;
+            this.deaths = 0;
+            for (int w = 0; w < board.length; w++) {
+                births += Long.bitCount(board[w] & ~before[w]);
+                deaths += Long.bitCount(before[w] & ~board[w]);
+            }
+        } else {
+            // Births and deaths both flip their cells
+            this.births = cursor.flipCells(board);
+            this.deaths = cursor.flipCells(board);
+        }
+        generation++;
+        this.tiles = null;
+    }
+
+    /**
+     * Get current generation
+     *
+     * @return generation shown
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Get last recorded generation
+     *
+     * @return number of generations after generation 0
+     */
+    public int getLastGeneration() {
+        return lastGeneration;
+    }
+
+    /**
+     * Initialize board with living cells (ignored, recording is read only)
+     *
+     * @param positions coordinates of living cells
+     */
+    @Override
+    public void initBoard(ArrayList<Integer[]> positions) {
+    }
+
+    /**
+     * Resize board (ignored, the recorded size is kept)
+     *
+     * @param width  new width of board
+     * @param length new height of board
+     */
+    @Override
+    public void setBoardSize(int width, int length) {
+        listeners.fire(EventTypes.CHANGE_SIZE);
+    }
+
+    /**
+     * Clear board (rewinds to generation 0)
+     */
+    @Override
+    public void resetBoard() {
+        seek(0);
+    }
+
+    /**
+     * Get living cells
+     *
+     * @return coordinates of living cells
+     */
+    @Override
+    public ArrayList<Integer[]> getPositions() {
+        return snapshot().getPositions();
+    }
+
+    /**
+     * Get copy of current board
+     *
+     * @return snapshot of living cells
+     */
+    @Override
+    public Snapshot snapshot() {
+        return new Snapshot(xLength, yLength, board.clone());
+    }
+
+    /**
+     * Get copy of a region of the current board (cells outside of the board are dead)
+     *
+     * @param x      left column of region
+     * @param y      top row of region
+     * @param width  width of region
+     * @param height height of region
+     * @return snapshot of the region, coordinates relative to (x,y)
+     */
+    @Override
+    public Snapshot snapshot(int x, int y, int width, int height) {
+        return Bits.region(board, xLength, yLength, x, y, width, height);
+    }
+
+    /**
+     * Get population of 8x8 tiles of the current board (counted when first needed after a frame change)
+     *
+     * @return tile summary
+     */
+    @Override
+    public DensityTiles getDensityTiles() {
+        if (tiles == null) {
+            this.tiles = DensityTiles.of(new Snapshot(xLength, yLength, board));
+        }
+        return tiles;
+    }
+
+    /**
+     * Get board width
+     *
+     * @return width of board (x length)
+     */
+    @Override
+    public int getXLength() {
+        return xLength;
+    }
+
+    /**
+     * Get board height
+     *
+     * @return height of board (y length)
+     */
+    @Override
+    public int getYLength() {
+        return yLength;
+    }
+
+    /**
+     * Get number of cells born by the last frame read
+     *
+     * @return births
+     */
+    @Override
+    public int getBirths() {
+        return births;
+    }
+
+    /**
+     * Get number of cells died by the last frame read
+     *
+     * @return deaths
+     */
+    @Override
+    public int getDeaths() {
+        return deaths;
+    }
+
+    /**
+     * Set surface mode (ignored, recorded with the mode of the original run)
+     *
+     * @param torus true = torus, false = hard limit
+     */
+    @Override
+    public void setTorus(boolean torus) {
+    }
+
+    /**
+     * Get surface mode (not recorded)
+     *
+     * @return false
+     */
+    @Override
+    public boolean isTorus() {
+        return false;
+    }
+
+    /**
+     * Show next recorded generation (stays at the last one at the end of the recording)
+     */
+    @Override
+    public void developGeneration() {
+        if (generation < lastGeneration) {
+            readFrame();
+        }
+        listeners.fire(EventTypes.UPDATED_BOARD);
+    }
+
+    /**
+     * Toggle cell (ignored, recording is read only)
+     *
+     * @param x x coordinate
+     * @param y y coordinate
+     */
+    @Override
+    public void toggleCell(int x, int y) {
+    }
+
+    /**
+     * Set cells (ignored, recording is read only)
+     *
+     * @param batch cells with their new state
+     */
+    @Override
+    public void setCells(CellBatch batch) {
+    }
+
+    /**
+     * Add listener
+     *
+     * @param listener listener
+     * @param executor executor delivering events
+     */
+    @Override
+    public void addListener(ModelListener listener, Executor executor) {
+        listeners.add(listener, executor);
+    }
+
+    /**
+     * Remove listener
+     *
+     * @param listener listener
+     */
+    @Override
+    public void removeListener(ModelListener listener) {
+        listeners.remove(listener);
+    }
+}
@@ -0,0 +1,149 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Immutable copy of a board (living cells packed row by row into bits, index = x + y * xLength)
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public class Snapshot {
+    private final int xLength;
+    private final int yLength;
+    private final long[] words;
+    private int population = -1;
+
+    /**
+     * Constructor
+     *
+     * @param xLength width of board
+     * @param yLength height of board
+     * @param words   living cells, bit (x + y * xLength) set = alive (array is not copied)
+     */
+    public Snapshot(int xLength, int yLength, long[] words) {
+        this.xLength = xLength;
+        this.yLength = yLength;
+        this.words = words;
+    }
+
+    /**
+     * Create snapshot from coordinates of living cells
+     *
+     * @param xLength   width of board
+     * @param yLength   height of board
+     * @param positions coordinates of living cells (x,y)
+     * @return snapshot
+     */
+    public static Snapshot of(int xLength, int yLength, ArrayList<Integer[]> positions) {
+        long[] words = new long[wordCount(xLength, yLength)];
+        for (Integer[] cell : positions) {
+            int i = cell[0] + cell[1] * xLength;
+            words[i >>> 6] |= 1L << i;
+        }
+        return new Snapshot(xLength, yLength, words);
+    }
+
+    /**
+     * Create snapshot with randomly placed living cells
+     *
+     * @param xLength width of board
+     * @param yLength height of board
+     * @param density share of living cells (0..1)
+     * @param random  random source
+     * @return snapshot
+     */
+    public static Snapshot random(int xLength, int yLength, double density, Random random) {
+        long[] words = new long[wordCount(xLength, yLength)];
+        for (int i = 0; i < xLength * yLength; i++) {
+            if (random.nextDouble() < density) {
+                words[i >>> 6] |= 1L << i;
+            }
+        }
+        return new Snapshot(xLength, yLength, words);
+    }
+
+    /**
+     * Number of longs needed to hold a board
+     *
+     * @param xLength width of board
+     * @param yLength height of board
+     * @return count of words
+     */
+    public static int wordCount(int xLength, int yLength) {
+        return (int) (((long) xLength * yLength + 63) >>> 6);
+    }
+
+    /**
+     * Get board width
+     *
+     * @return width of board (x length)
+     */
+    public int getXLength() {
+        return xLength;
+    }
+
+    /**
+     * Get board height
+     *
+     * @return height of board (y length)
+     */
+    public int getYLength() {
+        return yLength;
+    }
+
+    /**
+     * Get packed cells (must not be modified)
+     *
+     * @return living cells, bit (x + y * xLength) set = alive
+     */
+    public long[] getWords() {
+        return words;
+    }
+
+    /**
+     * Check single cell
+     *
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return true if cell is alive
+     */
+    public boolean isAlive(int x, int y) {
+        int i = x + y * xLength;
+        return (i >>> 6) < words.length && (words[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * Count living cells
+     *
+     * @return population
+     */
+    public int getPopulation() {
+        if (population < 0) {
+            int count = 0;
+            for (long word : words) {
+                count += Long.bitCount(word);
+            }
+            population = count;
+        }
+        return population;
+    }
+
+    /**
+     * Get living cells
+     *
+     * @return coordinates of living cells
+     */
+    public ArrayList<Integer[]> getPositions() {
+        ArrayList<Integer[]> positions = new ArrayList<>(getPopulation());
+        for (int w = 0; w < words.length; w++) {
+            long word = words[w];
+            while (word != 0) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(word);
+                positions.add(new Integer[]{i % xLength, i / xLength});
+                word &= word - 1;
+            }
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,244 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Horizontal strip of a board with one halo row above and below, developed 64 cells at a time
+ * <p>
+ * Every row starts at a word boundary (bit x of a row = cell x). The halo rows hold the neighbouring rows of the
+ * board (from another strip, the own strip on a torus, or dead cells at a hard limit) and have to be filled before
+ * every step. Neighbours are counted bit-parallel: the eight neighbour words of 64 cells are added with a
+ * bit-sliced counter, so the rules are a few logic operations per word. Edges and tiny boards behave like in
+ * BooleanModel (on a torus narrower than 3 cells a neighbour may be counted twice).
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public class Strip {
+    private final int xLength;
+    private final int rows;
+    private final int wordsPerRow;
+    private final boolean torus;
+    private long[] cells;
+    private long[] next;
+    private final long[] west;
+    private final long[] east;
+    private final long lastWordMask;
+    private long population;
+    private long births;
+    private long deaths;
+
+    /**
+     * Constructor (all cells dead)
+     *
+     * @param xLength width of board
+     * @param rows    number of rows of the strip (without halo)
+     * @param torus   true = torus (left and right edge are neighbours), false = hard limit
+     */
+    public Strip(int xLength, int rows, boolean torus) {
+        this.xLength = xLength;
+        this.rows = rows;
+        this.wordsPerRow = (xLength + 63) >>> 6;
+        this.torus = torus;
+        this.cells = new long[(rows + 2) * wordsPerRow];
+        this.next = new long[cells.length];
+        this.west = new long[cells.length];
+        this.east = new long[cells.length];
+        this.lastWordMask = (xLength & 63) == 0 ? -1L : (1L << (xLength & 63)) - 1;
+    }
+
+    /**
+     * Copy rows of a board into the strip
+     *
+     * @param board packed board (bit x + y * xLength)
+     * @param y     first board row of the strip
+     */
+    public void load(long[] board, int y) {
+        for (int row = 0; row < rows; row++) {
+            Bits.copy(board, (long) (y + row) * xLength, cells, (long) offset(row) << 6, xLength);
+        }
+        this.population = 0;
+        for (int row = 0; row < rows; row++) {
+            for (int w = 0; w < wordsPerRow; w++) {
+                population += Long.bitCount(cells[offset(row) + w]);
+            }
+        }
+    }
+
+    /**
+     * Set a cell alive (e.g. while the strip is loaded cell by cell)
+     *
+     * @param x   column
+     * @param row row of the strip
+     */
+    public void setAlive(int x, int row) {
+        int w = offset(row) + (x >>> 6);
+        if ((cells[w] & 1L << x) == 0) {
+            cells[w] |= 1L << x;
+            population++;
+        }
+    }
+
+    /**
+     * Copy the rows of the strip into a board
+     *
+     * @param board packed board (bit x + y * xLength)
+     * @param y     first board row of the strip
+     */
+    public void store(long[] board, int y) {
+        for (int row = 0; row < rows; row++) {
+            Bits.copy(cells, (long) offset(row) << 6, board, (long) (y + row) * xLength, xLength);
+        }
+    }
+
+    /**
+     * Get first word of a row
+     *
+     * @param row row of the strip, -1 = halo above, rows = halo below
+     * @return index into getCells()
+     */
+    public int offset(int row) {
+        return (row + 1) * wordsPerRow;
+    }
+
+    /**
+     * Get cells including halo rows (changes with every step, fill halo rows and read edge rows through it)
+     *
+     * @return words, row by row
+     */
+    public long[] getCells() {
+        return cells;
+    }
+
+    /**
+     * Get words per row
+     *
+     * @return number of longs in one row
+     */
+    public int getWordsPerRow() {
+        return wordsPerRow;
+    }
+
+    /**
+     * Get number of rows
+     *
+     * @return rows without halo
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Use the own edge rows as halo (whole board in one strip on a torus)
+     */
+    public void wrapHalo() {
+        System.arraycopy(cells, offset(rows - 1), cells, offset(-1), wordsPerRow);
+        System.arraycopy(cells, offset(0), cells, offset(rows), wordsPerRow);
+    }
+
+    /**
+     * Clear halo row (hard limit)
+     *
+     * @param above true = halo above, false = halo below
+     */
+    public void clearHalo(boolean above) {
+        int from = offset(above ? -1 : rows);
+        Arrays.fill(cells, from, from + wordsPerRow, 0);
+    }
+
+    /**
+     * Develop the strip by one generation (halo rows must be filled)
+     */
+    public void step() {
+        for (int row = -1; row <= rows; row++) {
+            shift(offset(row));
+        }
+        long born = 0;
+        long died = 0;
+        long alive = 0;
+        for (int row = 0; row < rows; row++) {
+            int above = offset(row - 1);
+            int self = offset(row);
+            int below = offset(row + 1);
+            for (int w = 0; w < wordsPerRow; w++) {
+                // Bit-sliced sum of the eight neighbours with an adder tree (count mod 8, 8 neighbours = 0 = dead)
+                long a = west[above + w];
+                long b = cells[above + w];
+                long c = east[above + w];
+                long d = west[self + w];
+                long e = east[self + w];
+                long f = west[below + w];
+                long g = cells[below + w];
+                long h = east[below + w];
+                long ones1 = a ^ b ^ c;
+                long twos1 = a & b | c & (a ^ b);
+                long ones2 = d ^ e ^ f;
+                long twos2 = d & e | f & (d ^ e);
+                long ones3 = g ^ h;
+                long twos3 = g & h;
+                long s0 = ones1 ^ ones2 ^ ones3;
+                long twos4 = ones1 & ones2 | ones3 & (ones1 ^ ones2);
+                long s1 = twos1 ^ twos2 ^ twos3 ^ twos4;
+                long s2 = twos1 & twos2 ^ twos3 & twos4 ^ (twos1 ^ twos2) & (twos3 ^ twos4);
+                long old = cells[self + w];
+                // 3 neighbours: born or stays alive, 2 neighbours: no change
+                long now = s1 & ~s2 & (s0 | old);
+                next[self + w] = now;
+                alive += Long.bitCount(now);
+                born += Long.bitCount(now & ~old);
+                died += Long.bitCount(old & ~now);
+            }
+        }
+        long[] swap = cells;
+        this.cells = next;
+        this.next = swap;
+        this.population = alive;
+        this.births = born;
+        this.deaths = died;
+    }
+
+    /**
+     * Fill west and east neighbour words of one row (bit x = cell x - 1, resp. cell x + 1)
+     *
+     * @param from first word of the row
+     */
+    private void shift(int from) {
+        int last = from + wordsPerRow - 1;
+        for (int w = from; w <= last; w++) {
+            west[w] = cells[w] << 1 | (w > from ? cells[w - 1] >>> 63 : 0);
+            east[w] = cells[w] >>> 1 | (w < last ? cells[w + 1] << 63 : 0);
+        }
+        west[last] &= lastWordMask;
+        if (torus) {
+            // Left neighbour of cell 0 is the last cell, right neighbour of the last cell is cell 0
+            west[from] |= cells[last] >>> ((xLength - 1) & 63) & 1;
+            east[last] |= (cells[from] & 1) << ((xLength - 1) & 63);
+        }
+    }
+
+    /**
+     * Get number of living cells (without halo)
+     *
+     * @return population
+     */
+    public long getPopulation() {
+        return population;
+    }
+
+    /**
+     * Get number of cells born in the last step
+     *
+     * @return births
+     */
+    public long getBirths() {
+        return births;
+    }
+
+    /**
+     * Get number of cells died in the last step
+     *
+     * @return deaths
+     */
+    public long getDeaths() {
+        return deaths;
+    }
+}
@@ -0,0 +1,604 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parallel engine developing only active tiles on a work-stealing pool
+ * <p>
+ * The board is split into tiles of 64 columns (one word per row) by 64 rows. A tile is active if a cell in it or in
+ * one of its eight neighbour tiles changed in the last generation (or was edited); all other tiles can't change and
+ * are not visited at all. Active tiles are split recursively into tasks of the common ForkJoinPool, idle threads
+ * steal halves of the remaining work. Each task develops 64 cells at a time with a bit-sliced adder tree and writes
+ * into its own part of a result buffer, the results are copied into the board afterwards.
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public class TiledModel implements Buildable {
+    public static final int TILE_ROWS = 64;
+    // Tiles per leaf task (a tile is ~4096 cells, fewer per task only adds scheduling overhead)
+    private static final int TASK_TILES = 4;
+
+    private long[] cells;
+    private int xLength;
+    private int yLength;
+    private int wordsPerRow;
+    private int tilesX;
+    private int tilesY;
+    private long lastWordMask;
+    private boolean torus;
+    private DensityTiles tiles;
+    private int births;
+    private int deaths;
+    private final ModelListeners listeners = new ModelListeners(this);
+
+    // Tiles changed since the last step, their neighbourhood is active in the next step
+    private int[] changed;
+    private boolean[] isChanged;
+    private int changedCount;
+    private int[] active;
+    private boolean[] isActive;
+    private long[] results = new long[0];
+
+    // Scheduling statistics of the last step
+    private int tilesComputed;
+    private final AtomicInteger stolenTasks = new AtomicInteger();
+
+    /**
+     * Constructor (empty board)
+     *
+     * @param xLength width of board
+     * @param yLength height of board
+     */
+    public TiledModel(int xLength, int yLength) {
+        load(new Snapshot(xLength, yLength, new long[Snapshot.wordCount(xLength, yLength)]));
+    }
+
+    /**
+     * Constructor (board with living cells)
+     *
+     * @param xLength   width of board
+     * @param yLength   height of board
+     * @param positions coordinates of living cells (x,y)
+     */
+    public TiledModel(int xLength, int yLength, ArrayList<Integer[]> positions) {
+        this(xLength, yLength);
+        initBoard(positions);
+    }
+
+    /**
+     * Constructor (board copied from a snapshot, e.g. of another model)
+     *
+     * @param snapshot board
+     */
+    public TiledModel(Snapshot snapshot) {
+        load(snapshot);
+    }
+
+    /**
+     * Replace board, all occupied tiles become active
+     *
+     * @param snapshot board
+     */
+    private void load(Snapshot snapshot) {
+        this.xLength = snapshot.getXLength();
+        this.yLength = snapshot.getYLength();
+        this.wordsPerRow = (xLength + 63) >>> 6;
+        this.tilesX = wordsPerRow;
+        this.tilesY = (yLength + TILE_ROWS - 1) / TILE_ROWS;
+        this.lastWordMask = (xLength & 63) == 0 ? -1L : (1L << (xLength & 63)) - 1;
+        this.cells = new long[wordsPerRow * yLength];
+        for (int y = 0; y < yLength; y++) {
+            Bits.copy(snapshot.getWords(), (long) y * xLength, cells, (long) y * wordsPerRow << 6, xLength);
+        }
+        this.tiles = DensityTiles.of(snapshot);
+        this.changed = new int[tilesX * tilesY];
+        this.isChanged = new boolean[tilesX * tilesY];
+        this.changedCount = 0;
+        this.active = new int[tilesX * tilesY];
+        this.isActive = new boolean[tilesX * tilesY];
+        markOccupied();
+    }
+
+    /**
+     * Mark all tiles with living cells as changed
+     */
+    private void markOccupied() {
+        for (int y = 0; y < yLength; y++) {
+            for (int w = 0; w < wordsPerRow; w++) {
+                if (cells[y * wordsPerRow + w] != 0) {
+                    markChanged(w, y);
+                }
+            }
+        }
+    }
+
+    /**
+     * Mark tile of a cell as changed
+     *
+     * @param tileX tile column (= word of the row)
+     * @param y     y coordinate of cell
+     */
+    private void markChanged(int tileX, int y) {
+        int tile = y / TILE_ROWS * tilesX + tileX;
+        if (!isChanged[tile]) {
+            isChanged[tile] = true;
+            changed[changedCount++] = tile;
+        }
+    }
+
+    /**
+     * Initialize board with living cells
+     *
+     * @param positions coordinates of living cells
+     */
+    @Override
+    public void initBoard(ArrayList<Integer[]> positions) {
+        for (Integer[] array : positions) {
+            this.cells[array[1] * wordsPerRow + (array[0] >>> 6)] |= 1L << array[0];
+        }
+        this.tiles = DensityTiles.of(snapshot());
+        markOccupied();
+        listeners.fire(EventTypes.CHANGE_SIZE);
+    }
+
+    /**
+     * Resize board
+     *
+     * @param x new width of board
+     * @param y new height of board
+     */
+    @Override
+    public void setBoardSize(int x, int y) {
+        load(snapshot(0, 0, x, y));
+        listeners.fire(EventTypes.CHANGE_SIZE);
+    }
+
+    /**
+     * Clear board
+     */
+    @Override
+    public void resetBoard() {
+        Arrays.fill(cells, 0);
+        this.tiles = new DensityTiles(xLength, yLength);
+        for (int i = 0; i < changedCount; i++) {
+            isChanged[changed[i]] = false;
+        }
+        this.changedCount = 0;
+        listeners.fire(EventTypes.RESET_BOARD);
+    }
+
+    /**
+     * Get living cells
+     *
+     * @return coordinates of living cells
+     */
+    @Override
+    public ArrayList<Integer[]> getPositions() {
+        ArrayList<Integer[]> positions = new ArrayList<>();
+        for (int y = 0; y < yLength; y++) {
+            for (int w = 0; w < wordsPerRow; w++) {
+                long word = cells[y * wordsPerRow + w];
+                while (word != 0) {
+                    positions.add(new Integer[]{(w << 6) + Long.numberOfTrailingZeros(word), y});
+                    word &= word - 1;
+                }
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Get copy of current board
+     *
+     * @return snapshot of living cells
+     */
+    @Override
+    public Snapshot snapshot() {
+        return snapshot(0, 0, xLength, yLength);
+    }
+
+    /**
+     * Get copy of a region of the current board (cells outside of the board are dead)
+     *
+     * @param x      left column of region
+     * @param y      top row of region
+     * @param width  width of region
+     * @param height height of region
+     * @return snapshot of the region, coordinates relative to (x,y)
+     */
+    @Override
+    public Snapshot snapshot(int x, int y, int width, int height) {
+        long[] words = new long[Snapshot.wordCount(width, height)];
+        int fromX = Math.max(x, 0);
+        int toX = Math.min(x + width, xLength);
+        for (int row = Math.max(y, 0); row < Math.min(y + height, yLength) && fromX < toX; row++) {
+            Bits.copy(cells, ((long) row * wordsPerRow << 6) + fromX, words, (long) (row - y) * width + fromX - x, toX - fromX);
+        }
+        return new Snapshot(width, height, words);
+    }
+
+    /**
+     * Get population of 8x8 tiles of the current board
+     *
+     * @return tile summary (updated in place)
+     */
+    @Override
+    public DensityTiles getDensityTiles() {
+        return tiles;
+    }
+
+    /**
+     * Get board width
+     *
+     * @return width of board (x length)
+     */
+    @Override
+    public int getXLength() {
+        return this.xLength;
+    }
+
+    /**
+     * Get board height
+     *
+     * @return height of board (y length)
+     */
+    @Override
+    public int getYLength() {
+        return this.yLength;
+    }
+
+    /**
+     * Set surface mode (cells at the edges get other neighbours, so all occupied tiles become active)
+     *
+     * @param torus true = torus, false = hard limit
+     */
+    @Override
+    public void setTorus(boolean torus) {
+        if (this.torus != torus) {
+            this.torus = torus;
+            markOccupied();
+        }
+    }
+
+    /**
+     * Get surface mode
+     *
+     * @return true = torus, false = hard limit
+     */
+    @Override
+    public boolean isTorus() {
+        return torus;
+    }
+
+    /**
+     * Develop current generation to the next one
+     */
+    @Override
+    public void developGeneration() {
+        // Active tiles: changed tiles and their neighbours
+        int activeCount = 0;
+        for (int i = 0; i < changedCount; i++) {
+            int tile = changed[i];
+            isChanged[tile] = false;
+            int tileX = tile % tilesX;
+            int tileY = tile / tilesX;
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    int nx = tileX + dx;
+                    int ny = tileY + dy;
+                    if (torus) {
+                        nx = (nx + tilesX) % tilesX;
+                        ny = (ny + tilesY) % tilesY;
+                    } else if (nx < 0 || ny < 0 || nx >= tilesX || ny >= tilesY) {
+                        continue;
+                    }
+                    int neighbour = ny * tilesX + nx;
+                    if (!isActive[neighbour]) {
+                        isActive[neighbour] = true;
+                        active[activeCount++] = neighbour;
+                    }
+                }
+            }
+        }
+        this.changedCount = 0;
+        if (results.length < activeCount * TILE_ROWS) {
+            this.results = new long[Math.max(activeCount * TILE_ROWS, results.length * 2)];
+        }
+
+        stolenTasks.set(0);
+        StepTask task = new StepTask(0, activeCount, null);
+        if (activeCount <= TASK_TILES) {
+            task.compute();
+        } else {
+            ForkJoinPool.commonPool().invoke(task);
+        }
+
+        // Copy results into the board (only changed words)
+        int born = 0;
+        int died = 0;
+        for (int k = 0; k < activeCount; k++) {
+            int tile = active[k];
+            isActive[tile] = false;
+            int tileX = tile % tilesX;
+            int top = tile / tilesX * TILE_ROWS;
+            int bottom = Math.min(top + TILE_ROWS, yLength);
+            for (int y = top; y < bottom; y++) {
+                int index = y * wordsPerRow + tileX;
+                long old = cells[index];
+                long now = results[k * TILE_ROWS + y - top];
+                long diff = old ^ now;
+                if (diff == 0) {
+                    continue;
+                }
+                born += Long.bitCount(now & ~old);
+                died += Long.bitCount(old & ~now);
+                while (diff != 0) {
+                    int bit = Long.numberOfTrailingZeros(diff);
+                    tiles.add((tileX << 6) + bit, y, (now >>> bit & 1) != 0 ? 1 : -1);
+                    diff &= diff - 1;
+                }
+                cells[index] = now;
+                markChanged(tileX, y);
+            }
+        }
+        this.births = born;
+        this.deaths = died;
+        this.tilesComputed = activeCount;
+        listeners.fire(EventTypes.UPDATED_BOARD);
+    }
+
+    /**
+     * Develop a range of active tiles, larger ranges are split in halves which idle threads may steal
+     */
+    private class StepTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+        private final Thread forkedBy;
+
+        /**
+         * Constructor
+         *
+         * @param from     first index into the active tiles
+         * @param to       index after the last active tile
+         * @param forkedBy thread forking the task, null for the root task
+         */
+        StepTask(int from, int to, Thread forkedBy) {
+            this.from = from;
+            this.to = to;
+            this.forkedBy = forkedBy;
+        }
+
+        /**
+         * Develop tiles or split
+         */
+        @Override
+        protected void compute() {
+            if (forkedBy != null && forkedBy != Thread.currentThread()) {
+                stolenTasks.incrementAndGet();
+            }
+            if (to - from <= TASK_TILES) {
+                for (int k = from; k < to; k++) {
+                    developTile(k);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            StepTask first = new StepTask(from, middle, Thread.currentThread());
+            first.fork();
+            new StepTask(middle, to, Thread.currentThread()).compute();
+            first.join();
+        }
+    }
+
+    /**
+     * Develop one active tile into the result buffer
+     *
+     * @param k index into the active tiles
+     */
+    private void developTile(int k) {
+        int tile = active[k];
+        int tileX = tile % tilesX;
+        int top = tile / tilesX * TILE_ROWS;
+        int bottom = Math.min(top + TILE_ROWS, yLength);
+        for (int y = top; y < bottom; y++) {
+            int above = y > 0 ? y - 1 : torus ? yLength - 1 : -1;
+            int below = y < yLength - 1 ? y + 1 : torus ? 0 : -1;
+            // Bit-sliced sum of the eight neighbours with an adder tree (count mod 8, 8 neighbours = 0 = dead)
+            long a = west(above, tileX);
+            long b = word(above, tileX);
+            long c = east(above, tileX);
+            long d = west(y, tileX);
+            long e = east(y, tileX);
+            long f = west(below, tileX);
+            long g = word(below, tileX);
+            long h = east(below, tileX);
+            long ones1 = a ^ b ^ c;
+            long twos1 = a & b | c & (a ^ b);
+            long ones2 = d ^ e ^ f;
+            long twos2 = d & e | f & (d ^ e);
+            long ones3 = g ^ h;
+            long twos3 = g & h;
+            long s0 = ones1 ^ ones2 ^ ones3;
+            long twos4 = ones1 & ones2 | ones3 & (ones1 ^ ones2);
+            long s1 = twos1 ^ twos2 ^ twos3 ^ twos4;
+            long s2 = twos1 & twos2 ^ twos3 & twos4 ^ (twos1 ^ twos2) & (twos3 ^ twos4);
+            // 3 neighbours: born or stays alive, 2 neighbours: no change
+            results[k * TILE_ROWS + y - top] = s1 & ~s2 & (s0 | word(y, tileX));
+        }
+    }
+
+    /**
+     * Get 64 cells of a row
+     *
+     * @param y    row, -1 = outside of board
+     * @param word word of the row
+     * @return cells, 0 outside of board
+     */
+    private long word(int y, int word) {
+        return y < 0 ? 0 : cells[y * wordsPerRow + word];
+    }
+
+    /**
+     * Get left neighbours of 64 cells (bit x = cell x - 1)
+     *
+     * @param y    row, -1 = outside of board
+     * @param word word of the row
+     * @return neighbour cells
+     */
+    private long west(int y, int word) {
+        if (y < 0) {
+            return 0;
+        }
+        int row = y * wordsPerRow;
+        long left;
+        if (word > 0) {
+            left = cells[row + word - 1] >>> 63;
+        } else if (torus) {
+            // Left neighbour of cell 0 is the last cell
+            left = cells[row + wordsPerRow - 1] >>> ((xLength - 1) & 63) & 1;
+        } else {
+            left = 0;
+        }
+        long west = cells[row + word] << 1 | left;
+        return word == wordsPerRow - 1 ? west & lastWordMask : west;
+    }
+
+    /**
+     * Get right neighbours of 64 cells (bit x = cell x + 1)
+     *
+     * @param y    row, -1 = outside of board
+     * @param word word of the row
+     * @return neighbour cells
+     */
+    private long east(int y, int word) {
+        if (y < 0) {
+            return 0;
+        }
+        int row = y * wordsPerRow;
+        if (word < wordsPerRow - 1) {
+            return cells[row + word] >>> 1 | cells[row + word + 1] << 63;
+        }
+        long east = cells[row + word] >>> 1;
+        if (torus) {
+            // Right neighbour of the last cell is cell 0
+            east |= (cells[row] & 1) << ((xLength - 1) & 63);
+        }
+        return east;
+    }
+
+    /**
+     * Get number of cells born in the last developed generation
+     *
+     * @return births
+     */
+    @Override
+    public int getBirths() {
+        return births;
+    }
+
+    /**
+     * Get number of cells died in the last developed generation
+     *
+     * @return deaths
+     */
+    @Override
+    public int getDeaths() {
+        return deaths;
+    }
+
+    /**
+     * Get number of tiles developed in the last generation
+     *
+     * @return active tiles
+     */
+    public int getTilesComputed() {
+        return tilesComputed;
+    }
+
+    /**
+     * Get number of tiles skipped in the last generation
+     *
+     * @return idle tiles
+     */
+    public int getTilesSkipped() {
+        return tilesX * tilesY - tilesComputed;
+    }
+
+    /**
+     * Get number of tasks run by another thread than the one forking them in the last generation
+     *
+     * @return stolen tasks
+     */
+    public int getStolenTasks() {
+        return stolenTasks.get();
+    }
+
+    /**
+     * Toggle cell (living cell dies, dead cell is born)
+     *
+     * @param x x coordinate
+     * @param y y coordinate
+     */
+    @Override
+    public void toggleCell(int x, int y) {
+        int index = y * wordsPerRow + (x >>> 6);
+        this.cells[index] ^= 1L << x;
+        tiles.add(x, y, (cells[index] >>> x & 1) != 0 ? 1 : -1);
+        markChanged(x >>> 6, y);
+        listeners.fire(EventTypes.UPDATED_BOARD, x, y, 1, 1);
+    }
+
+    /**
+     * Set many cells alive or dead, observers are notified once (cells outside of the board are skipped)
+     *
+     * @param batch cells with their new state
+     */
+    @Override
+    public void setCells(CellBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            int x = batch.getX(i);
+            int y = batch.getY(i);
+            if (x < 0 || y < 0 || x >= this.xLength || y >= this.yLength) {
+                continue;
+            }
+            int index = y * wordsPerRow + (x >>> 6);
+            boolean alive = (cells[index] >>> x & 1) != 0;
+            if (alive == batch.isAlive(i)) {
+                continue;
+            }
+            this.cells[index] ^= 1L << x;
+            tiles.add(x, y, batch.isAlive(i) ? 1 : -1);
+            markChanged(x >>> 6, y);
+        }
+        if (batch.size() > 0) {
+            listeners.fire(EventTypes.UPDATED_BOARD, batch.getMinX(), batch.getMinY(), batch.getWidth(), batch.getHeight());
+        }
+    }
+
+    /**
+     * Add listener
+     *
+     * @param listener listener
+     * @param executor executor delivering events
+     */
+    @Override
+    public void addListener(ModelListener listener, Executor executor) {
+        listeners.add(listener, executor);
+    }
+
+    /**
+     * Remove listener
+     *
+     * @param listener listener
+     */
+    @Override
+    public void removeListener(ModelListener listener) {
+        listeners.remove(listener);
+    }
+}
@@ -0,0 +1,85 @@
+package model;
+
+/**
+ * Per-cell age layer for trail and heatmap display
+ * <p>
+ * Stores for every cell the tick (recorded generation) it was last alive. Recording a generation only touches
+ * living cells, the age of all other cells grows implicitly. Clearing moves the base tick instead of touching cells.
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public class TrailMap {
+    private int xLength;
+    private int yLength;
+    private int[] lastAlive = new int[0];
+    private int tick;
+    // Cells last alive before base count as never alive
+    private int base = 1;
+
+    /**
+     * Record living cells of a generation (resizes and clears the layer if the board size changed)
+     *
+     * @param snapshot board of the generation
+     */
+    public void record(Snapshot snapshot) {
+        if (snapshot.getXLength() != xLength || snapshot.getYLength() != yLength || tick == Integer.MAX_VALUE) {
+            this.xLength = snapshot.getXLength();
+            this.yLength = snapshot.getYLength();
+            this.lastAlive = new int[xLength * yLength];
+            this.tick = 0;
+            this.base = 1;
+        }
+        tick++;
+        long[] words = snapshot.getWords();
+        for (int w = 0; w < words.length; w++) {
+            long word = words[w];
+            while (word != 0) {
+                lastAlive[(w << 6) + Long.numberOfTrailingZeros(word)] = tick;
+                word &= word - 1;
+            }
+        }
+    }
+
+    /**
+     * Forget all recorded cells
+     */
+    public void clear() {
+        this.base = tick + 1;
+    }
+
+    /**
+     * Get generations since a cell was last alive
+     *
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return age (0 = alive in the last recorded generation), -1 if never alive since the last clear
+     */
+    public int getAge(int x, int y) {
+        // May be read while another thread records a resized board, never fail for that
+        int[] cells = lastAlive;
+        int i = x + y * xLength;
+        if (i >= cells.length) {
+            return -1;
+        }
+        int seen = cells[i];
+        return seen >= base ? tick - seen : -1;
+    }
+
+    /**
+     * Get board width
+     *
+     * @return width of board (x length)
+     */
+    public int getXLength() {
+        return xLength;
+    }
+
+    /**
+     * Get board height
+     *
+     * @return height of board (y length)
+     */
+    public int getYLength() {
+        return yLength;
+    }
+}
@@ -0,0 +1,247 @@
+package view;
+
+import model.DensityTiles;
+import model.Snapshot;
+import model.TrailMap;
+
+import java.util.Arrays;
+
+/**
+ * Paint cells into an ARGB pixel buffer (premultiplied, one int per pixel, cellSize x cellSize pixels per cell)
+ * <p>
+ * Independent of JavaFX, the buffer is copied to the canvas by the View in one go.
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+public class CellRasterizer {
+    private int[] pixels = new int[0];
+    private int width;
+    private int height;
+    private int cellSize;
+
+    /**
+     * Prepare empty (transparent) buffer for a board, the buffer is only reallocated when it has to grow
+     *
+     * @param columns  board width in cells
+     * @param rows     board height in cells
+     * @param cellSize cell size in pixels
+     */
+    public void begin(int columns, int rows, int cellSize) {
+        this.cellSize = Math.max(1, cellSize);
+        this.width = columns * this.cellSize;
+        this.height = rows * this.cellSize;
+        if (pixels.length < width * height) {
+            this.pixels = new int[width * height];
+        } else {
+            Arrays.fill(pixels, 0, width * height, 0);
+        }
+    }
+
+    /**
+     * Prepare empty (transparent) buffer for zoomed out display, one pixel per several cells
+     *
+     * @param width  width in pixels
+     * @param height height in pixels
+     */
+    public void beginPixels(int width, int height) {
+        begin(width, height, 1);
+    }
+
+    /**
+     * Shade every pixel by the share of living cells in the square of cells it covers
+     *
+     * @param region        board region, cell (0,0) is covered by pixel (0,0)
+     * @param cellsPerPixel edge length of the square of cells per pixel
+     * @param argb          colour of a completely populated pixel
+     */
+    public void drawDensity(Snapshot region, int cellsPerPixel, int argb) {
+        int columns = Math.min(width, region.getXLength() / cellsPerPixel);
+        int rows = Math.min(height, region.getYLength() / cellsPerPixel);
+        int max = cellsPerPixel * cellsPerPixel;
+        for (int py = 0; py < rows; py++) {
+            for (int px = 0; px < columns; px++) {
+                int count = 0;
+                for (int y = py * cellsPerPixel; y < (py + 1) * cellsPerPixel; y++) {
+                    for (int x = px * cellsPerPixel; x < (px + 1) * cellsPerPixel; x++) {
+                        if (region.isAlive(x, y)) {
+                            count++;
+                        }
+                    }
+                }
+                if (count > 0) {
+                    pixels[py * width + px] = shade(argb, count, max);
+                }
+            }
+        }
+    }
+
+    /**
+     * Shade every pixel by the share of living cells in the tiles it covers (no cell is visited)
+     *
+     * @param tiles         tile summary of the board
+     * @param left          tile column shown in the first pixel column
+     * @param top           tile row shown in the first pixel row
+     * @param tilesPerPixel edge length of the square of tiles per pixel
+     * @param argb          colour of a completely populated pixel
+     */
+    public void drawDensity(DensityTiles tiles, int left, int top, int tilesPerPixel, int argb) {
+        int max = tilesPerPixel * tilesPerPixel * DensityTiles.TILE_SIZE * DensityTiles.TILE_SIZE;
+        for (int py = 0; py < height; py++) {
+            int tileY = top + py * tilesPerPixel;
+            if (tileY >= tiles.getTilesY()) {
+                break;
+            }
+            for (int px = 0; px < width; px++) {
+                int tileX = left + px * tilesPerPixel;
+                if (tileX >= tiles.getTilesX()) {
+                    break;
+                }
+                int count = 0;
+                for (int ty = tileY; ty < tileY + tilesPerPixel; ty++) {
+                    for (int tx = tileX; tx < tileX + tilesPerPixel; tx++) {
+                        count += tiles.getCount(tx, ty);
+                    }
+                }
+                if (count > 0) {
+                    pixels[py * width + px] = shade(argb, count, max);
+                }
+            }
+        }
+    }
+
+    /**
+     * Colour with alpha scaled by density (premultiplied)
+     *
+     * @param argb  opaque colour
+     * @param count living cells
+     * @param max   cells covered
+     * @return shaded colour, at least faintly visible for a single cell
+     */
+    private static int shade(int argb, int count, int max) {
+        int alpha = Math.max(48, 255 * count / max);
+        int r = (argb >> 16 & 0xFF) * alpha / 255;
+        int g = (argb >> 8 & 0xFF) * alpha / 255;
+        int b = (argb & 0xFF) * alpha / 255;
+        return alpha << 24 | r << 16 | g << 8 | b;
+    }
+
+    /**
+     * Fill one cell
+     *
+     * @param x    x coordinate
+     * @param y    y coordinate
+     * @param argb colour
+     */
+    public void fillCell(int x, int y, int argb) {
+        int start = y * cellSize * width + x * cellSize;
+        for (int row = 0; row < cellSize; row++) {
+            Arrays.fill(pixels, start, start + cellSize, argb);
+            start += width;
+        }
+    }
+
+    /**
+     * Fill cells that were alive before, coloured by age
+     *
+     * @param trail    age layer of the whole board
+     * @param left     board column shown in the first buffer column
+     * @param top      board row shown in the first buffer row
+     * @param palette  colour per age (age 0 = alive in the last recorded generation)
+     * @param oldColor colour for ages beyond the palette (0 = transparent)
+     */
+    public void drawTrail(TrailMap trail, int left, int top, int[] palette, int oldColor) {
+        int columns = Math.min(width / cellSize, trail.getXLength() - left);
+        int rows = Math.min(height / cellSize, trail.getYLength() - top);
+        for (int y = 0; y < rows; y++) {
+            int first = y * cellSize * width;
+            boolean painted = false;
+            for (int x = 0; x < columns; x++) {
+                int age = trail.getAge(left + x, top + y);
+                if (age < 0) {
+                    continue;
+                }
+                int argb = age < palette.length ? palette[age] : oldColor;
+                if (argb != 0) {
+                    int start = first + x * cellSize;
+                    Arrays.fill(pixels, start, start + cellSize, argb);
+                    painted = true;
+                }
+            }
+            if (painted) {
+                for (int row = 1; row < cellSize; row++) {
+                    System.arraycopy(pixels, first, pixels, first + row * width, width);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fill all living cells of a snapshot; each cell row is painted into its first pixel row once and then copied
+     *
+     * @param snapshot board (same size as passed to begin)
+     * @param argb     colour
+     */
+    public void drawCells(Snapshot snapshot, int argb) {
+        long[] words = snapshot.getWords();
+        int columns = snapshot.getXLength();
+        int rows = Math.min(snapshot.getYLength(), height / cellSize);
+        for (int y = 0; y < rows; y++) {
+            int first = y * cellSize * width;
+            boolean painted = false;
+            // Walk set bits of this cell row
+            int i = y * columns;
+            int end = i + columns;
+            while (i < end) {
+                int w = i >>> 6;
+                if (w >= words.length) {
+                    break;
+                }
+                long word = words[w] & (-1L << i);
+                if (word == 0) {
+                    i = (w + 1) << 6;
+                    continue;
+                }
+                int cell = (w << 6) + Long.numberOfTrailingZeros(word);
+                if (cell >= end) {
+                    break;
+                }
+                int start = first + (cell - y * columns) * cellSize;
+                Arrays.fill(pixels, start, start + cellSize, argb);
+                painted = true;
+                i = cell + 1;
+            }
+            if (painted) {
+                for (int row = 1; row < cellSize; row++) {
+                    System.arraycopy(pixels, first, pixels, first + row * width, width);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get pixel buffer (row stride = width)
+     *
+     * @return pixels
+     */
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    /**
+     * Get buffer width
+     *
+     * @return width in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Get buffer height
+     *
+     * @return height in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+}
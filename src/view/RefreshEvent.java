@@ -0,0 +1,29 @@
+package view;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for painting cells
+ *
+ * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
+ */
+@Name("gameoflife.Refresh")
+@Label("Refresh")
+@Category("Game of Life")
+@Description("Cells painted onto the canvas")
+public class RefreshEvent extends Event {
+    @Label("Cells")
+    @Description("Cells of the painted region")
+    public long cells;
+
+    @Label("Living Cells")
+    public long living;
+
+    @Label("Partial")
+    @Description("Only a changed rectangle was painted")
+    public boolean partial;
+}
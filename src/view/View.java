@@ -1,8 +1,7 @@
 package view;
 
 import controller.Controller;
-import javafx.animation.Animation;
-import javafx.animation.Timeline;
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.beans.property.*;
@@ -11,6 +10,8 @@ import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.*;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.StackPane;
@@ -19,48 +20,87 @@ import javafx.scene.paint.Color;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import model.Buildable;
+import model.DensityTiles;
 import model.ModelEvent;
+import model.ModelListener;
+import model.Snapshot;
+import model.TrailMap;
 
-import java.util.ArrayList;
-import java.util.Observable;
-import java.util.Observer;
+import java.nio.IntBuffer;
 
 /**
  * @author Andreas Ellwanger, Christian Reiner, Lisa Stephan
  */
-public class View extends Application implements Observer {
-    public Canvas canvas;
+public class View extends Application implements ModelListener {
+    public Canvas canvas, gridCanvas;
     public Scene scene;
-    public Button bRun, bNext, bReset, bFastForward;
-    public CheckBox cTorus;
+    public Button bRun, bNext, bReset, bFastForward, bCancelIO;
+    public CheckBox cTorus, cMaxSpeed;
     public Slider sSlider, cSlider;
     public VBox top;
     public HBox bottom;
     public StackPane pane;
     public TextField tfGeneration;
-    public Label generationShow, liveCells;
-    public MenuItem menuItemOpen, menuItemSaveAs, gridAdjust, party, menuItemClose, menuItemSizeBorder, trail;
-    public FileChooser fileChooser;
+    public Label generationShow, liveCells, rateShow, phaseShow;
+    public ProgressBar ioProgress;
+    public Menu menuLibrary;
+    public MenuItem menuItemOpen, menuItemSaveAs, menuItemRecord, menuItemOpenRecording, gridAdjust, party, menuItemClose, menuItemSizeBorder, trail, heatmap;
+    public FileChooser fileChooser, recordingChooser;
     public double canvasWidth, canvasHeight, sceneWidth, sceneHeight, cellSize;
     public String inputPath, outputPath;
-    public ToggleButton tb1, tb2;
+    public ToggleButton tb1, tb2, tb3, tb4;
     public BorderPane root;
     public boolean hideGrid;
-    public boolean isGridDisplayed, partyOn , trailToggle;
+    public boolean isGridDisplayed, partyOn , trailToggle, heatmapOn;
     public ObjectProperty grid;
     public SimpleIntegerProperty currentGeneration, aliveCells;
+    public SimpleDoubleProperty generationsPerSecond;
     public SimpleDoubleProperty strokeGrid;
     public SimpleBooleanProperty isPlaying, torus;
     public int generationJump, r, g, b;
-    public Timeline timeLine;
+    public AnimationTimer pulse;
     public double speed = 100;
     public int cycleCount;
     public ToggleGroup tGroup;
     public RadioMenuItem rbStroke, rbStroke2, rbStroke3;
-    public ArrayList<Integer[]> memory;
+    public TrailMap trailMap;
+    public CheckMenuItem fitBoard, timing;
+    // Viewport: board follows the window (cell size = cellSize), or free with zoom (pixels per cell) and offset
+    public boolean followWindow = true;
+    public int viewX, viewY, boardWidth, boardHeight;
+    public double zoom = 1;
+    public static final double[] ZOOM_LEVELS = {1.0 / 256, 1.0 / 128, 1.0 / 64, 1.0 / 32, 1.0 / 16, 1.0 / 8, 1.0 / 4, 1.0 / 2,
+            1, 2, 3, 4, 5, 6, 7, 8, 10, 12, 16, 24, 32};
     Controller controller;
     Stage primaryStage;
     private GraphicsContext graphicsContext;
+    // Color.LIGHTGREEN as ARGB
+    private static final int TRAIL_COLOR = 0xFF90EE90;
+    // Heatmap fades out over this many generations
+    private static final int HEAT_DECAY = 32;
+    private static final int[] TRAIL_PALETTE = {TRAIL_COLOR};
+    private static final int[] HEAT_PALETTE = new int[HEAT_DECAY];
+
+    static {
+        // Light green, premultiplied alpha falling with age
+        for (int age = 0; age < HEAT_DECAY; age++) {
+            int alpha = 255 - age * 255 / HEAT_DECAY;
+            HEAT_PALETTE[age] = alpha << 24 | (0x90 * alpha / 255) << 16 | (0xEE * alpha / 255) << 8 | (0x90 * alpha / 255);
+        }
+    }
+    private final CellRasterizer rasterizer = new CellRasterizer();
+    private WritableImage cellImage;
+    // Repaint of a few changed cells, in the colour of the last full repaint
+    private final CellRasterizer patchRasterizer = new CellRasterizer();
+    private WritableImage patchImage;
+    private int lastCellColor = 0xFF000000;
+    // Parameters the grid layer was drawn with
+    private int gridCellSize;
+    private double gridStroke = -1;
+    private double gridDrawnWidth, gridDrawnHeight;
+    // Start of a pan gesture
+    private double panX, panY;
+    private int panViewX, panViewY;
 
     /**
      * Constructor
@@ -71,10 +111,11 @@ public class View extends Application implements Observer {
         this.controller = c;
         this.currentGeneration = new SimpleIntegerProperty(0);
         this.aliveCells = new SimpleIntegerProperty(0);
+        this.generationsPerSecond = new SimpleDoubleProperty(0);
         this.isPlaying = new SimpleBooleanProperty(false);
         this.strokeGrid = new SimpleDoubleProperty(0.3);
         this.isGridDisplayed = true;
-        this.memory = new ArrayList<>();
+        this.trailMap = new TrailMap();
         this.partyOn = true;
         this.trailToggle = true;
         this.g = 254;
@@ -88,7 +129,6 @@ public class View extends Application implements Observer {
      */
     @Override
     public void start(Stage primaryStage) throws Exception {
-        timeLine = new Timeline();
 
         // Init layout
         this.root = new BorderPane();
@@ -102,12 +142,15 @@ public class View extends Application implements Observer {
         // Events triggered in menu
         menuItemOpen.setOnAction(controller);
         menuItemSaveAs.setOnAction(controller);
+        menuItemRecord.setOnAction(controller);
+        menuItemOpenRecording.setOnAction(controller);
         menuItemClose.setOnAction(event -> Platform.exit());
         this.grid = new SimpleObjectProperty();
         this.gridAdjust.setOnAction(controller);
         //Events triggered in toolbar
         bFastForward.setOnAction(controller);
         bReset.setOnAction(controller);
+        bCancelIO.setOnAction(controller);
         // Textfield just Integer
         tfGeneration.lengthProperty().addListener((observable, oldValue, newValue) -> {
             if (newValue.intValue() > oldValue.intValue()) {
@@ -125,46 +168,13 @@ public class View extends Application implements Observer {
         aliveCells.addListener((observable, oldValue, newValue) -> {
             liveCells.setText(aliveCells.getValue().toString());
         });
-        // Run button event
-        bRun.setOnAction(event -> {
-            if (isPlaying.getValue()) {
-                timeLine.stop();
-                this.cycleCount = Animation.INDEFINITE;
-                timeLine.setCycleCount(this.cycleCount);
-                this.bRun.getStyleClass().remove("bPause");
-                this.bRun.getStyleClass().add("bRun");
-                this.bRun.setTooltip(new Tooltip("Run"));
-                this.isPlaying = new SimpleBooleanProperty(false);
-            } else {
-                timeLine.stop();
-                this.cycleCount = Animation.INDEFINITE;
-                timeLine.setCycleCount(this.cycleCount);
-                this.bRun.getStyleClass().remove("bRun");
-                this.bRun.getStyleClass().add("bPause");
-                this.bRun.setTooltip(new Tooltip("Pause"));
-                this.isPlaying = new SimpleBooleanProperty(true);
-                timeLine.play();
-            }
-        });
-        // Next button event
-        bNext.setOnAction(event -> {
-//            this.timeLine.pause();
-            if (tfGeneration.getText().isEmpty()) {
-                this.generationJump = 1;
-            } else {
-                this.generationJump = Integer.parseInt(tfGeneration.getText());
-            }
-            timeLine.stop();
-            this.cycleCount = generationJump;
-            this.timeLine.setCycleCount(this.cycleCount);
-            this.bRun.getStyleClass().removeAll("button", "bRun", "bPause");
-            this.bRun.getStyleClass().add("button");
-            this.bRun.getStyleClass().add("bPause");
-            this.bRun.setTooltip(new Tooltip("Pause"));
-//            System.out.println(bRun.getStyleClass() + " : StyleClass after bNext method.");
-            this.isPlaying = new SimpleBooleanProperty(true);
-            this.timeLine.play();
+        // Set label generationsPerSecond
+        generationsPerSecond.addListener((observable, oldValue, newValue) -> {
+            rateShow.setText(String.format("%.0f", newValue.doubleValue()));
         });
+        // Run and next button events
+        bRun.setOnAction(controller);
+        bNext.setOnAction(controller);
 
         // Set CSS
         scene.getStylesheets().add(getClass().getResource("viewGoL.css").toExternalForm());
@@ -191,6 +201,8 @@ public class View extends Application implements Observer {
         this.fileChooser = new FileChooser();
         FileChooser.ExtensionFilter txtFilter = new FileChooser.ExtensionFilter("TEXT files (*.txt)", "*.txt");
         fileChooser.getExtensionFilters().add(txtFilter);
+        this.recordingChooser = new FileChooser();
+        recordingChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Recordings (*.golr)", "*.golr"));
 
         // MenuBar with File and Graphics Settings
         MenuBar menuBar = new MenuBar();
@@ -212,12 +224,19 @@ public class View extends Application implements Observer {
         menuSizeBorder.getItems().addAll(rbStroke, rbStroke2, rbStroke3);
 
         this.menuItemOpen = new MenuItem("Open...");
+        this.menuLibrary = new Menu("Open from Library");
         this.menuItemSaveAs = new MenuItem("Save as...");
+        this.menuItemRecord = new MenuItem("Start Recording...");
+        this.menuItemOpenRecording = new MenuItem("Open Recording...");
         this.menuItemClose = new MenuItem("Quit Game Of Life");
         this.menuItemSizeBorder = new MenuItem("Grid Stroke");
         this.gridAdjust = new MenuItem("Hide Grid");
         this.party = new MenuItem("Show Party");
         this.trail = new MenuItem("Show Trail");
+        this.heatmap = new MenuItem("Show Heatmap");
+        this.fitBoard = new CheckMenuItem("Fit Board to Window");
+        fitBoard.setSelected(true);
+        this.timing = new CheckMenuItem("Show Timing");
 
         // Toolbar
         ToolBar toolBar = new ToolBar();
@@ -237,9 +256,22 @@ public class View extends Application implements Observer {
         bReset = new Button();
         bReset.setTooltip(new Tooltip("Clear"));
         bReset.setId("bReset");
+        // Progress of background save/open, only visible while running
+        this.ioProgress = new ProgressBar();
+        ioProgress.setMaxWidth(80);
+        ioProgress.setVisible(false);
+        ioProgress.managedProperty().bind(ioProgress.visibleProperty());
+        this.bCancelIO = new Button("Cancel");
+        bCancelIO.setTooltip(new Tooltip("Cancel save/open"));
+        bCancelIO.visibleProperty().bind(ioProgress.visibleProperty());
+        bCancelIO.managedProperty().bind(ioProgress.visibleProperty());
         cTorus = new CheckBox();
         cTorus.setText("Torus");
         cTorus.setSelected(false);
+        cMaxSpeed = new CheckBox();
+        cMaxSpeed.setText("Max speed");
+        cMaxSpeed.setTooltip(new Tooltip("Develop generations as fast as possible"));
+        cMaxSpeed.setSelected(false);
 
         cSlider = new Slider();
         cSlider.setTooltip(new Tooltip("Cellsize"));
@@ -264,6 +296,7 @@ public class View extends Application implements Observer {
         sSlider.setBlockIncrement(0.1);
         sSlider.setShowTickMarks(false);
         sSlider.setSnapToTicks(true);
+        sSlider.disableProperty().bind(cMaxSpeed.selectedProperty());
 
         VBox test = new VBox();
         VBox test1 = new VBox();
@@ -273,22 +306,33 @@ public class View extends Application implements Observer {
         generationShow.setTooltip(new Tooltip("Generation"));
         this.liveCells = new Label(aliveCells.getValue().toString());
         liveCells.setTooltip(new Tooltip("Live cells"));
+        this.rateShow = new Label("0");
+        rateShow.setTooltip(new Tooltip("Measured generations per second"));
+        // Time per phase of the last half second, only shown on demand
+        this.phaseShow = new Label();
+        phaseShow.setTooltip(new Tooltip("Time per phase: compute, record (trail/recording), copy (frame), paint"));
+        phaseShow.visibleProperty().bind(timing.selectedProperty());
+        phaseShow.managedProperty().bind(timing.selectedProperty());
         Label gen = new Label("Generation: ");
         Label cellAlive = new Label("Alive cells: ");
+        Label genRate = new Label("Gens/sec: ");
         Label timeLineRate = new Label("Alive cells: ");
-        test1.getChildren().addAll(gen, cellAlive);
+        test1.getChildren().addAll(gen, cellAlive, genRate);
         test2.getChildren().addAll(sSlider, cSlider);
-        test.getChildren().addAll(generationShow, liveCells);
+        test.getChildren().addAll(generationShow, liveCells, rateShow);
 
         this.tb1 = new ToggleButton("Boolean");
         tb1.setSelected(true);
         this.tb2 = new ToggleButton("BitSet");
+        this.tb3 = new ToggleButton("Tiled");
+        this.tb4 = new ToggleButton("Blocked");
         ToggleGroup group = new ToggleGroup();
         tb1.setToggleGroup(group);
         tb2.setToggleGroup(group);
+        tb3.setToggleGroup(group);
+        tb4.setToggleGroup(group);
 
         sSlider.valueProperty().addListener((observable, oldValue, newValue) -> {
-            timeLine.rateProperty().set((double) newValue);
             timeLineRate.setText(newValue.toString());
         });
         party.setOnAction(event -> {
@@ -312,10 +356,15 @@ public class View extends Application implements Observer {
             }
         });
 
-        menuFile.getItems().addAll(menuItemOpen, menuItemSaveAs, new SeparatorMenuItem(), menuItemClose);
-        menuView.getItems().addAll(menuSizeBorder, gridAdjust, party, trail);
+        menuFile.getItems().addAll(menuItemOpen, menuLibrary, menuItemSaveAs, new SeparatorMenuItem(), menuItemRecord, menuItemOpenRecording, new SeparatorMenuItem(), menuItemClose);
+        heatmap.setOnAction(event -> {
+            this.heatmapOn = !this.heatmapOn;
+            heatmap.setText(heatmapOn ? "Hide Heatmap" : "Show Heatmap");
+        });
+
+        menuView.getItems().addAll(menuSizeBorder, gridAdjust, party, trail, heatmap, fitBoard, timing);
         menuBar.getMenus().addAll(menuFile, menuView);
-        toolBar.getItems().addAll(bRun, tfGeneration, bNext, bFastForward, bReset, new Separator(), cTorus, new Separator(), test2, new Separator(), tb1, tb2, new Separator(), test1, test);
+        toolBar.getItems().addAll(bRun, tfGeneration, bNext, bFastForward, bReset, new Separator(), cTorus, cMaxSpeed, new Separator(), test2, new Separator(), tb1, tb2, tb3, tb4, new Separator(), test1, test, phaseShow, ioProgress, bCancelIO);
         top.getChildren().addAll(menuBar, toolBar);
 
         return top;
@@ -332,10 +381,34 @@ public class View extends Application implements Observer {
         pane.setAlignment(Pos.TOP_LEFT);
         canvas = new Canvas(canvasWidth, canvasHeight);
         this.graphicsContext = canvas.getGraphicsContext2D();
-        pane.getChildren().addAll(canvas);
+        // Grid is drawn once into its own layer below the cells
+        gridCanvas = new Canvas(canvasWidth, canvasHeight);
+        gridCanvas.setMouseTransparent(true);
+        pane.getChildren().addAll(gridCanvas, canvas);
         return pane;
     }
 
+    /**
+     * Check if trail or heatmap is shown (generations have to be recorded in trailMap)
+     *
+     * @return true if trail or heatmap is on
+     */
+    public boolean isTrailRecorded() {
+        return !trailToggle || heatmapOn;
+    }
+
+    /**
+     * Show run button as run or pause
+     *
+     * @param playing true if generations are being developed
+     */
+    public void setPlaying(boolean playing) {
+        this.bRun.getStyleClass().removeAll("bRun", "bPause");
+        this.bRun.getStyleClass().add(playing ? "bPause" : "bRun");
+        this.bRun.setTooltip(new Tooltip(playing ? "Pause" : "Run"));
+        this.isPlaying = new SimpleBooleanProperty(playing);
+    }
+
     /**
      * Resize stage
      */
@@ -347,87 +420,404 @@ public class View extends Application implements Observer {
     }
 
     /**
-     * Resize canvas proportional to cell size
+     * Resize canvas proportional to cell size (or to the window, if the board does not follow the window)
      *
-     * @param x new canvas width
-     * @param y new canvas height
+     * @param x new board width
+     * @param y new board height
      */
     public void resizeCanvas(int x, int y) {
-        this.canvas.setWidth(x * (int) this.cellSize);
-        this.canvas.setHeight(y * (int) this.cellSize);
+        this.boardWidth = x;
+        this.boardHeight = y;
+        if (followWindow) {
+            this.canvas.setWidth(x * (int) this.cellSize);
+            this.canvas.setHeight(y * (int) this.cellSize);
+        } else {
+            this.canvas.setWidth(pane.getWidth());
+            this.canvas.setHeight(pane.getHeight());
+            clampViewport();
+        }
+        redrawGrid();
 //        System.out.println("RESIZE CANVAS: " + this.canvas.getWidth() + ", " + this.canvas.getHeight());
     }
 
     /**
-     * Paint grid and living cells
+     * Get size of a cell on screen
+     *
+     * @return pixels per cell, 0 if zoomed out below one pixel per cell
+     */
+    public int pixelsPerCell() {
+        if (followWindow) {
+            return (int) cellSize;
+        }
+        return zoom >= 1 ? (int) zoom : 0;
+    }
+
+    /**
+     * Get number of cells per pixel (edge length) when zoomed out
+     *
+     * @return cells per pixel, 1 if a cell covers at least one pixel
+     */
+    public int cellsPerPixel() {
+        return followWindow || zoom >= 1 ? 1 : (int) Math.round(1 / zoom);
+    }
+
+    /**
+     * Get left column of the board region needed for display
+     *
+     * @return board column shown at the left canvas border
+     */
+    public int regionX() {
+        return followWindow ? 0 : viewX;
+    }
+
+    /**
+     * Get top row of the board region needed for display
+     *
+     * @return board row shown at the top canvas border
+     */
+    public int regionY() {
+        return followWindow ? 0 : viewY;
+    }
+
+    /**
+     * Get width of the board region needed for display
+     *
+     * @return cells, 0 if the display only needs the tile summary
+     */
+    public int regionWidth() {
+        return regionSize(canvas.getWidth(), boardWidth);
+    }
+
+    /**
+     * Get height of the board region needed for display
+     *
+     * @return cells, 0 if the display only needs the tile summary
+     */
+    public int regionHeight() {
+        return regionSize(canvas.getHeight(), boardHeight);
+    }
+
+    /**
+     * Get number of cells visible along one canvas axis
+     *
+     * @param pixels canvas size
+     * @param cells  board size
+     * @return cells, 0 if the display only needs the tile summary
+     */
+    private int regionSize(double pixels, int cells) {
+        if (followWindow) {
+            return cells;
+        }
+        if (zoom >= 1) {
+            return (int) Math.ceil(pixels / (int) zoom);
+        }
+        int cellsPerPixel = cellsPerPixel();
+        return cellsPerPixel < DensityTiles.TILE_SIZE ? (int) Math.ceil(pixels) * cellsPerPixel : 0;
+    }
+
+    /**
+     * Get board cell under a canvas position
+     *
+     * @param x canvas x coordinate
+     * @param y canvas y coordinate
+     * @return cell coordinates {x, y}, null if outside of the board or zoomed out below one pixel per cell
+     */
+    public int[] cellAt(double x, double y) {
+        int pixels = pixelsPerCell();
+        if (pixels == 0 || x < 0 || y < 0) {
+            return null;
+        }
+        int cellX = regionX() + (int) x / pixels;
+        int cellY = regionY() + (int) y / pixels;
+        if (cellX >= boardWidth || cellY >= boardHeight) {
+            return null;
+        }
+        return new int[]{cellX, cellY};
+    }
+
+    /**
+     * Zoom in or out by one level, the cell under the mouse stays in place
+     *
+     * @param x      canvas x coordinate of the mouse
+     * @param y      canvas y coordinate of the mouse
+     * @param levels positive = zoom in, negative = zoom out
+     */
+    public void zoomAt(double x, double y, int levels) {
+        int level = 0;
+        while (level < ZOOM_LEVELS.length - 1 && ZOOM_LEVELS[level] < zoom) {
+            level++;
+        }
+        level = Math.max(0, Math.min(ZOOM_LEVELS.length - 1, level + levels));
+        double cellX = viewX + x / zoom;
+        double cellY = viewY + y / zoom;
+        this.zoom = ZOOM_LEVELS[level];
+        this.viewX = (int) Math.round(cellX - x / zoom);
+        this.viewY = (int) Math.round(cellY - y / zoom);
+        clampViewport();
+        redrawGrid();
+    }
+
+    /**
+     * Remember start of a pan gesture
      *
-     * @param positions living cells
+     * @param x canvas x coordinate of the mouse
+     * @param y canvas y coordinate of the mouse
+     */
+    public void startPan(double x, double y) {
+        this.panX = x;
+        this.panY = y;
+        this.panViewX = viewX;
+        this.panViewY = viewY;
+    }
+
+    /**
+     * Move viewport with the mouse
+     *
+     * @param x canvas x coordinate of the mouse
+     * @param y canvas y coordinate of the mouse
+     */
+    public void panTo(double x, double y) {
+        this.viewX = panViewX - (int) Math.round((x - panX) / zoom);
+        this.viewY = panViewY - (int) Math.round((y - panY) / zoom);
+        clampViewport();
+        redrawGrid();
+    }
+
+    /**
+     * Zoom so the whole board fits into the canvas
      */
-    public void refresh(ArrayList<Integer[]> positions) {
+    public void fitViewport() {
+        double fit = Math.min(canvas.getWidth() / Math.max(1, boardWidth), canvas.getHeight() / Math.max(1, boardHeight));
+        int level = ZOOM_LEVELS.length - 1;
+        while (level > 0 && ZOOM_LEVELS[level] > fit) {
+            level--;
+        }
+        this.zoom = ZOOM_LEVELS[level];
+        this.viewX = 0;
+        this.viewY = 0;
+        redrawGrid();
+    }
+
+    /**
+     * Keep viewport on the board, aligned to whole pixels
+     */
+    private void clampViewport() {
+        int visibleX = (int) (canvas.getWidth() / zoom);
+        int visibleY = (int) (canvas.getHeight() / zoom);
+        this.viewX = Math.max(0, Math.min(viewX, boardWidth - visibleX));
+        this.viewY = Math.max(0, Math.min(viewY, boardHeight - visibleY));
+        // Zoom levels below 1 are powers of two, so aligned offsets are whole tiles from 8 cells per pixel on
+        int align = cellsPerPixel();
+        this.viewX -= viewX % align;
+        this.viewY -= viewY % align;
+    }
+
+    /**
+     * Paint grid layer, only if its size, cell size, stroke or visibility changed since it was last drawn
+     */
+    public void redrawGrid() {
+        int spacing = pixelsPerCell() >= 3 ? pixelsPerCell() : 0;
+        double width = canvas.getWidth();
+        double height = canvas.getHeight();
+        // Grid ends with the board
+        double gridWidth = Math.min(width, (double) (boardWidth - regionX()) * spacing);
+        double gridHeight = Math.min(height, (double) (boardHeight - regionY()) * spacing);
+        double stroke = isGridDisplayed ? this.strokeGrid.get() : 0;
+        if (width == gridCanvas.getWidth() && height == gridCanvas.getHeight() && gridWidth == gridDrawnWidth
+                && gridHeight == gridDrawnHeight && spacing == gridCellSize && stroke == gridStroke) {
+            return;
+        }
+        this.gridCellSize = spacing;
+        this.gridStroke = stroke;
+        this.gridDrawnWidth = gridWidth;
+        this.gridDrawnHeight = gridHeight;
+        gridCanvas.setWidth(width);
+        gridCanvas.setHeight(height);
+        GraphicsContext gridContext = gridCanvas.getGraphicsContext2D();
+        gridContext.clearRect(0, 0, width, height);
+        if (isGridDisplayed && spacing > 0) {
+            gridContext.setLineWidth(stroke);
+            for (int i = 0; i <= gridWidth; i += spacing) {
+                gridContext.strokeLine(i, 0, i, gridHeight);
+            }
+            for (int i = 0; i <= gridHeight; i += spacing) {
+                gridContext.strokeLine(0, i, gridWidth, i);
+            }
+        }
+    }
+
+    /**
+     * Paint living cells of a model (only the visible region is copied)
+     *
+     * @param model instance of Buildable
+     */
+    public void refresh(Buildable model) {
+        int width = regionWidth();
+        int height = regionHeight();
+        refresh(width > 0 ? model.snapshot(regionX(), regionY(), width, height) : null, model.getDensityTiles());
+    }
+
+    /**
+     * Paint living cells
+     * (cells are rasterized into a pixel buffer and copied to the canvas with a single drawImage;
+     * below one pixel per cell pixels are shaded by density, from the tile summary when zoomed out far)
+     *
+     * @param region visible region starting at (regionX, regionY), may be null when zoomed out to tiles
+     * @param tiles  tile summary of the whole board
+     */
+    public void refresh(Snapshot region, DensityTiles tiles) {
+        RefreshEvent event = new RefreshEvent();
+        event.begin();
+        paint(region, tiles);
+        event.end();
+        if (event.shouldCommit()) {
+            if (region != null) {
+                event.cells = (long) region.getXLength() * region.getYLength();
+                event.living = region.getPopulation();
+            } else {
+                event.cells = (long) tiles.getXLength() * tiles.getYLength();
+                event.living = tiles.getPopulation();
+            }
+            event.commit();
+        }
+    }
+
+    /**
+     * Rasterize the region (or tiles) and draw it onto the canvas
+     *
+     * @param region visible region starting at (regionX, regionY), may be null when zoomed out to tiles
+     * @param tiles  tile summary of the whole board
+     */
+    private void paint(Snapshot region, DensityTiles tiles) {
         this.canvasWidth = this.canvas.getWidth();
         this.canvasHeight = this.canvas.getHeight();
 
-        graphicsContext.setFill(Color.WHITE);
         graphicsContext.clearRect(0, 0, canvasWidth, canvasHeight);
-        if (!trailToggle && !this.memory.isEmpty()) {
-            graphicsContext.setFill(Color.LIGHTGREEN);
-            for (Integer[] cell : this.memory) {
-                graphicsContext.fillRect(cell[0] * (int) cellSize, cell[1] * (int) cellSize, (int) cellSize, (int) cellSize);
-            }
-        }
-        graphicsContext.setFill(Color.BLACK);
+        int cellColor = 0xFF000000;
         if (!partyOn) {
-            graphicsContext.setFill(Color.rgb(r, g, b));
+            cellColor = 0xFF000000 | r << 16 | g << 8 | b;
             this.r = (int) (Math.random() * 253);
             this.g = (int) (Math.random() * 253);
             this.b = (int) (Math.random() * 253);
         }
+        this.lastCellColor = cellColor;
 
-
-        if (isGridDisplayed) {
-            graphicsContext.setLineWidth(this.strokeGrid.get());
-
-            for (int i = 0; i <= canvasWidth; i += (int) cellSize) {
-                graphicsContext.strokeLine(i, 0, i, canvasHeight);
+        int pixels = pixelsPerCell();
+        int cellsPerPixel = cellsPerPixel();
+        if (pixels > 0) {
+            if (region == null) {
+                return;
             }
-            for (int i = 0; i <= canvasHeight; i += (int) cellSize) {
-                graphicsContext.strokeLine(0, i, canvasWidth, i);
+            rasterizer.begin(region.getXLength(), region.getYLength(), pixels);
+            if (isTrailRecorded()) {
+                rasterizer.drawTrail(trailMap, regionX(), regionY(), heatmapOn ? HEAT_PALETTE : TRAIL_PALETTE, heatmapOn ? 0 : TRAIL_COLOR);
             }
-        }
-        for (Integer[] cell : positions) {
-            graphicsContext.fillRect(cell[0] * (int) cellSize, cell[1] * (int) cellSize, (int) cellSize, (int) cellSize);
-            if (!trailToggle && !this.memory.contains(cell)) {
-                this.memory.add(cell);
+            rasterizer.drawCells(region, cellColor);
+        } else {
+            rasterizer.beginPixels((int) Math.ceil(canvasWidth), (int) Math.ceil(canvasHeight));
+            if (cellsPerPixel < DensityTiles.TILE_SIZE) {
+                if (region == null) {
+                    return;
+                }
+                rasterizer.drawDensity(region, cellsPerPixel, cellColor);
+            } else {
+                rasterizer.drawDensity(tiles, regionX() >> DensityTiles.TILE_SHIFT, regionY() >> DensityTiles.TILE_SHIFT, cellsPerPixel >> DensityTiles.TILE_SHIFT, cellColor);
             }
         }
+
+        int width = rasterizer.getWidth();
+        int height = rasterizer.getHeight();
+        if (width == 0 || height == 0) {
+            return;
+        }
+        // Reuse image as long as the canvas size does not change
+        if (cellImage == null || (int) cellImage.getWidth() != width || (int) cellImage.getHeight() != height) {
+            this.cellImage = new WritableImage(width, height);
+        }
+        cellImage.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbPreInstance(), IntBuffer.wrap(rasterizer.getPixels()), width);
+        graphicsContext.drawImage(cellImage, 0, 0);
     }
 
     /**
-     * View update method
+     * Paint only the cells in a rectangle (e.g. after drawing with the mouse), the rest of the canvas is kept
      *
-     * @param o   Observable
-     * @param arg Event
+     * @param model  instance of Buildable
+     * @param x      left column of changed cells
+     * @param y      top row of changed cells
+     * @param width  number of columns
+     * @param height number of rows
+     */
+    public void refreshCells(Buildable model, int x, int y, int width, int height) {
+        int pixels = pixelsPerCell();
+        if (pixels == 0) {
+            // Zoomed out, a changed cell may shade a whole pixel
+            refresh(model);
+            return;
+        }
+        // Only the visible part of the rectangle
+        int left = Math.max(x, regionX());
+        int top = Math.max(y, regionY());
+        int right = (int) Math.min((long) x + width, (long) regionX() + regionWidth());
+        int bottom = (int) Math.min((long) y + height, (long) regionY() + regionHeight());
+        if (right <= left || bottom <= top) {
+            return;
+        }
+        RefreshEvent event = new RefreshEvent();
+        event.begin();
+        patchRasterizer.begin(right - left, bottom - top, pixels);
+        if (isTrailRecorded()) {
+            patchRasterizer.drawTrail(trailMap, left, top, heatmapOn ? HEAT_PALETTE : TRAIL_PALETTE, heatmapOn ? 0 : TRAIL_COLOR);
+        }
+        Snapshot patch = model.snapshot(left, top, right - left, bottom - top);
+        patchRasterizer.drawCells(patch, lastCellColor);
+        int patchWidth = patchRasterizer.getWidth();
+        int patchHeight = patchRasterizer.getHeight();
+        // Image only grows, only its top left part is drawn
+        if (patchImage == null || patchImage.getWidth() < patchWidth || patchImage.getHeight() < patchHeight) {
+            this.patchImage = new WritableImage(Math.max(patchWidth, 64), Math.max(patchHeight, 64));
+        }
+        patchImage.getPixelWriter().setPixels(0, 0, patchWidth, patchHeight, PixelFormat.getIntArgbPreInstance(), IntBuffer.wrap(patchRasterizer.getPixels()), patchWidth);
+        double canvasX = (double) (left - regionX()) * pixels;
+        double canvasY = (double) (top - regionY()) * pixels;
+        graphicsContext.clearRect(canvasX, canvasY, patchWidth, patchHeight);
+        graphicsContext.drawImage(patchImage, 0, 0, patchWidth, patchHeight, canvasX, canvasY, patchWidth, patchHeight);
+        event.end();
+        if (event.shouldCommit()) {
+            event.cells = (long) patch.getXLength() * patch.getYLength();
+            event.living = patch.getPopulation();
+            event.partial = true;
+            event.commit();
+        }
+    }
+
+    /**
+     * Model changed, paint it (delivered on the FX thread while the world is locked)
+     *
+     * @param model changed model
+     * @param event type of change
      */
     @Override
-    public void update(final Observable o, final Object arg) {
-        if (o instanceof Buildable) {
-            final Buildable model = (Buildable) o;
-            final ModelEvent event = (ModelEvent) arg;
-            switch (event.getType()) {
-                case RESET_BOARD:
-                    refresh(model.getPositions());
-                    break;
-                case UPDATED_BOARD:
-                    refresh(model.getPositions());
+    public void modelChanged(final Buildable model, final ModelEvent event) {
+        switch (event.getType()) {
+            case RESET_BOARD:
+                refresh(model);
+                break;
+            case UPDATED_BOARD:
+                // Generations developed while playing are shown by the display pulse
+                if (isPlaying.get()) {
                     break;
-                case CHANGE_SIZE:
-                    resizeCanvas(model.getXLength(), model.getYLength());
-                    refresh(model.getPositions());
-                    break;
-                default:
-            }
+                }
+                if (event.isWholeBoard(model)) {
+                    refresh(model);
+                } else {
+                    refreshCells(model, event.getX(), event.getY(), event.getWidth(), event.getHeight());
+                }
+                break;
+            case CHANGE_SIZE:
+                resizeCanvas(model.getXLength(), model.getYLength());
+                refresh(model);
+                break;
+            default:
         }
     }
 }
-
-